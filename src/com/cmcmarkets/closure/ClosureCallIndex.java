@@ -0,0 +1,126 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.ScalarIndexExtension;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Base for indices mapping the namespace argument of a goog.* call to the files containing the call.
+ */
+abstract class ClosureCallIndex extends ScalarIndexExtension<String>
+{
+    private final DataIndexer<String, Void, FileContent> indexer;
+
+    private final FileBasedIndex.InputFilter inputFilter = new FileBasedIndex.InputFilter()
+    {
+        public boolean acceptInput(@NotNull final VirtualFile file)
+        {
+            return ClosureDeclarations.isJavaScriptFile(file);
+        }
+    };
+
+    ClosureCallIndex(@NotNull final Pattern pattern)
+    {
+        indexer = new DataIndexer<String, Void, FileContent>()
+        {
+            @NotNull
+            public Map<String, Void> map(@NotNull final FileContent inputData)
+            {
+                final Map<String, Void> result = new HashMap<String, Void>();
+
+                for (String namespace : ClosureDeclarations.find(pattern, inputData.getContentAsText()))
+                {
+                    result.put(namespace, null);
+                }
+                return result;
+            }
+        };
+    }
+
+    @NotNull
+    public DataIndexer<String, Void, FileContent> getIndexer()
+    {
+        return indexer;
+    }
+
+    @NotNull
+    public KeyDescriptor<String> getKeyDescriptor()
+    {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    public FileBasedIndex.InputFilter getInputFilter()
+    {
+        return inputFilter;
+    }
+
+    public boolean dependsOnFileContent()
+    {
+        return true;
+    }
+
+    public int getVersion()
+    {
+        return 1;
+    }
+
+    /**
+     * Inverts an index into the namespaces found in each file.
+     *
+     * @param project current project
+     * @param indexId id of a {@link ClosureCallIndex}
+     * @return namespaces per file
+     */
+    @NotNull
+    static Map<VirtualFile, List<String>> getNamespacesByFile(@NotNull final Project project, @NotNull final ID<String, Void> indexId)
+    {
+        final Map<VirtualFile, List<String>> result = new HashMap<VirtualFile, List<String>>();
+
+        ApplicationManager.getApplication().runReadAction(new Runnable()
+        {
+            public void run()
+            {
+                final FileBasedIndex index = FileBasedIndex.getInstance();
+                final GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+
+                for (String namespace : index.getAllKeys(indexId, project))
+                {
+                    for (VirtualFile file : index.getContainingFiles(indexId, namespace, scope))
+                    {
+                        List<String> namespaces = result.get(file);
+                        if (namespaces == null)
+                        {
+                            namespaces = new ArrayList<String>();
+                            result.put(file, namespaces);
+                        }
+                        namespaces.add(namespace);
+                    }
+                }
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Text level extraction of goog.provide and goog.require namespaces, used where building PSI would be too
+ * expensive such as indexing or scanning a whole source tree.
+ */
+final class ClosureDeclarations
+{
+    static final Pattern PROVIDE_PATTERN = createPattern("provide");
+    static final Pattern REQUIRE_PATTERN = createPattern("require");
+
+    private ClosureDeclarations()
+    {
+    }
+
+    /**
+     * @param file virtual file
+     * @return true if the file is a javascript file that may contain closure declarations
+     */
+    static boolean isJavaScriptFile(@NotNull final VirtualFile file)
+    {
+        return "js".equals(file.getExtension());
+    }
+
+    /**
+     * Loads the current text of the file, preferring an open document over the saved content.
+     *
+     * @param file javascript file
+     * @return file text
+     */
+    @NotNull
+    static CharSequence loadText(@NotNull final VirtualFile file)
+    {
+        return ApplicationManager.getApplication().runReadAction(new Computable<CharSequence>()
+        {
+            public CharSequence compute()
+            {
+                final Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+                return document != null ? document.getImmutableCharSequence() : LoadTextUtil.loadText(file);
+            }
+        });
+    }
+
+    @NotNull
+    static List<String> findProvides(@NotNull final CharSequence text)
+    {
+        return find(PROVIDE_PATTERN, text);
+    }
+
+    @NotNull
+    static List<String> findRequires(@NotNull final CharSequence text)
+    {
+        return find(REQUIRE_PATTERN, text);
+    }
+
+    @NotNull
+    static List<String> find(@NotNull final Pattern pattern, @NotNull final CharSequence text)
+    {
+        final List<String> result = new ArrayList<String>();
+        final Matcher matcher = pattern.matcher(text);
+
+        while (matcher.find())
+        {
+            result.add(matcher.group(2));
+        }
+        return result;
+    }
+
+    private static Pattern createPattern(final String function)
+    {
+        return Pattern.compile("goog\\." + function + "\\s*\\(\\s*(['\"])([^'\"]+)\\1\\s*\\)");
+    }
+}
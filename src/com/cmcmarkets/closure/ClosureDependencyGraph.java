@@ -0,0 +1,859 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.text.CharArrayUtil;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Project wide goog.provide / goog.require graph. Namespaces are interned to int ids and every namespace keeps
+ * primitive lists of the namespaces it requires and the namespaces requiring it. An edge exists from every
+ * namespace a file provides to every namespace the file requires.
+ * <p/>
+ * The graph is built lazily from the provide and require indices and afterwards kept up to date by rescanning
+ * the text of the project files reported as changed by the virtual file system. Every build or update creates a
+ * new immutable {@link Snapshot} in local structures, sharing the unchanged edge arrays of the previous one, and
+ * publishes it with a single volatile write, so queries never take a lock and a cancelled update leaves the
+ * published graph untouched. Strongly connected components are computed once per snapshot, transitive
+ * dependency counts lazily per queried namespace with a bounded walk and cached in the snapshot.
+ */
+public class ClosureDependencyGraph
+{
+    private static final int[] NO_IDS = new int[0];
+
+    private final Project project;
+
+    /**
+     * Published graph, null until first built. Replaced as a whole, never modified.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Serialises builds and updates, queries only read the published snapshot
+     */
+    private final Object updateLock = new Object();
+
+    /**
+     * Guarded by its own monitor, the file system listener runs inside write actions and must never wait for
+     * an update holding the update lock
+     */
+    private final Set<VirtualFile> dirtyFiles = new HashSet<VirtualFile>();
+    private volatile boolean dirty;
+    private volatile boolean purgeInvalid;
+
+    private final SimpleModificationTracker provideTracker = new SimpleModificationTracker();
+
+    public ClosureDependencyGraph(@NotNull final Project project)
+    {
+        this.project = project;
+
+        project.getMessageBus().connect(project).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener()
+        {
+            public void before(@NotNull final List<? extends VFileEvent> events)
+            {
+                fileSystemChanging(events);
+            }
+
+            public void after(@NotNull final List<? extends VFileEvent> events)
+            {
+                fileSystemChanged(events);
+            }
+        });
+
+        EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new DocumentListener()
+        {
+            public void beforeDocumentChange(final DocumentEvent event)
+            {
+                documentChanging(event.getDocument(), event.getOffset(), event.getOldLength());
+            }
+
+            public void documentChanged(final DocumentEvent event)
+            {
+                documentChanging(event.getDocument(), event.getOffset(), event.getNewLength());
+            }
+        }, project);
+    }
+
+    public static ClosureDependencyGraph getInstance(@NotNull final Project project)
+    {
+        return ServiceManager.getService(project, ClosureDependencyGraph.class);
+    }
+
+    /**
+     * @return tracker incremented whenever a goog.provide of a javascript file may have been added, changed or
+     * removed, in a document or on disk
+     */
+    @NotNull
+    public ModificationTracker getProvideModificationTracker()
+    {
+        return provideTracker;
+    }
+
+    /**
+     * @param namespace closure namespace
+     * @return namespaces with a direct goog.require of the given namespace
+     */
+    @NotNull
+    public List<String> getDependents(@NotNull final String namespace)
+    {
+        final Snapshot graph = getSnapshot();
+
+        if (graph == null || !graph.ids.containsKey(namespace))
+        {
+            return Collections.emptyList();
+        }
+
+        final int[] edges = graph.dependents[graph.ids.get(namespace)];
+        final List<String> result = new ArrayList<String>(edges.length);
+        final BitSet seen = new BitSet();
+
+        for (int id : edges)
+        {
+            if (!seen.get(id))
+            {
+                seen.set(id);
+                result.add(graph.names[id]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the namespaces reachable from a namespace through goog.require, stopping as soon as the count
+     * exceeds the limit.
+     *
+     * @param namespace closure namespace
+     * @param limit     largest count of interest
+     * @return number of distinct namespaces reachable, limit + 1 if there are more than limit, -1 while the graph
+     * is unavailable
+     */
+    public int getTransitiveDependencyCount(@NotNull final String namespace, final int limit)
+    {
+        final Snapshot graph = getSnapshot();
+
+        if (graph == null)
+        {
+            return -1;
+        }
+        return graph.ids.containsKey(namespace) ? graph.getTransitiveCount(graph.ids.get(namespace), limit) : 0;
+    }
+
+    /**
+     * Returns the required namespaces that directly or transitively require one of the provided namespaces. As
+     * every provided namespace has an edge to every required one, this holds exactly for the required namespaces
+     * in the same strongly connected component as a provided one.
+     *
+     * @param provides namespaces provided by a file
+     * @param required namespaces required by the same file
+     * @return subset of the required namespaces closing a require cycle
+     */
+    @NotNull
+    public Set<String> findCyclicRequires(@NotNull final Collection<String> provides, @NotNull final Collection<String> required)
+    {
+        final Set<String> result = new HashSet<String>();
+        final Snapshot graph = getSnapshot();
+
+        if (graph == null)
+        {
+            return result;
+        }
+
+        final TIntArrayList provideComponents = new TIntArrayList(provides.size());
+
+        for (String provide : provides)
+        {
+            if (graph.ids.containsKey(provide))
+            {
+                provideComponents.add(graph.components[graph.ids.get(provide)]);
+            }
+        }
+
+        for (String require : required)
+        {
+            if (graph.ids.containsKey(require) && provideComponents.contains(graph.components[graph.ids.get(require)]))
+            {
+                result.add(require);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the shortest goog.require chain leading from one namespace to another.
+     *
+     * @param from start namespace
+     * @param to   target namespace
+     * @return namespaces along the chain including both ends, or null if there is none
+     */
+    @Nullable
+    public List<String> findRequirePath(@NotNull final String from, @NotNull final String to)
+    {
+        final Snapshot graph = getSnapshot();
+
+        if (graph == null || !graph.ids.containsKey(from) || !graph.ids.containsKey(to))
+        {
+            return null;
+        }
+
+        final int start = graph.ids.get(from);
+        final int target = graph.ids.get(to);
+        // every path between two namespaces of one component stays inside it, the usual case for cycles
+        final int[] components = graph.components;
+        final int component = components[start] == components[target] ? components[start] : -1;
+        final int[] parents = new int[graph.names.length];
+        final BitSet visited = new BitSet(graph.names.length);
+        final TIntArrayList queue = new TIntArrayList();
+        queue.add(start);
+        visited.set(start);
+        parents[start] = -1;
+
+        for (int head = 0; head < queue.size(); head++)
+        {
+            final int current = queue.getQuick(head);
+
+            if (current == target)
+            {
+                final List<String> path = new ArrayList<String>();
+                for (int id = current; id != -1; id = parents[id])
+                {
+                    path.add(graph.names[id]);
+                }
+                Collections.reverse(path);
+                return path;
+            }
+
+            for (int next : graph.requires[current])
+            {
+                if (!visited.get(next) && (component == -1 || components[next] == component))
+                {
+                    visited.set(next);
+                    parents[next] = current;
+                    queue.add(next);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Called before and after every document change, the lines touched by the change are searched for a
+     * goog.provide so typing anywhere else keeps the provided namespaces cached.
+     */
+    private void documentChanging(final Document document, final int offset, final int length)
+    {
+        final VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+
+        if (file == null || !ClosureDeclarations.isJavaScriptFile(file))
+        {
+            return;
+        }
+
+        final CharSequence text = document.getImmutableCharSequence();
+        final int start = document.getLineStartOffset(document.getLineNumber(offset));
+        final int end = document.getLineEndOffset(document.getLineNumber(Math.min(offset + length, text.length())));
+
+        if (CharArrayUtil.indexOf(text, "goog.provide", start, end) != -1)
+        {
+            provideTracker.incModificationCount();
+        }
+    }
+
+    /**
+     * Deleted files and the old location of moved files are only in the project scope before the event, their
+     * records are purged on the next query.
+     */
+    private void fileSystemChanging(final List<? extends VFileEvent> events)
+    {
+        final GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+
+        for (VFileEvent event : events)
+        {
+            final VirtualFile file = event.getFile();
+
+            if ((event instanceof VFileDeleteEvent || event instanceof VFileMoveEvent) && file != null && isRelevant(file)
+                    && scope.contains(file))
+            {
+                synchronized (dirtyFiles)
+                {
+                    purgeInvalid = true;
+                }
+                provideTracker.incModificationCount();
+                return;
+            }
+        }
+    }
+
+    private void fileSystemChanged(final List<? extends VFileEvent> events)
+    {
+        final GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+        boolean changed = false;
+
+        synchronized (dirtyFiles)
+        {
+            for (VFileEvent event : events)
+            {
+                if (event instanceof VFileDeleteEvent)
+                {
+                    continue;
+                }
+
+                final VirtualFile file = event instanceof VFileCopyEvent ? ((VFileCopyEvent) event).findCreatedFile() : event.getFile();
+
+                // the file system events of all open projects arrive here
+                if (file != null && file.isValid() && isRelevant(file) && scope.contains(file))
+                {
+                    // directories are rescanned when the graph is next used, not inside the write action
+                    dirtyFiles.add(file);
+                    dirty = true;
+                    changed = true;
+                }
+            }
+        }
+
+        if (changed)
+        {
+            provideTracker.incModificationCount();
+        }
+    }
+
+    private static boolean isRelevant(final VirtualFile file)
+    {
+        return file.isDirectory() || ClosureDeclarations.isJavaScriptFile(file);
+    }
+
+    /**
+     * Builds the graph on first use and applies pending file changes. Returns the published snapshot right away
+     * if nothing changed since it was built.
+     *
+     * @return current graph, null if it cannot be built yet because indices are being built
+     */
+    @Nullable
+    private Snapshot getSnapshot()
+    {
+        final Snapshot current = snapshot;
+
+        if (current != null && !dirty && !purgeInvalid)
+        {
+            return current;
+        }
+
+        synchronized (updateLock)
+        {
+            if (snapshot == null)
+            {
+                if (DumbService.isDumb(project))
+                {
+                    return null;
+                }
+
+                synchronized (dirtyFiles)
+                {
+                    // the indices already reflect every change reported so far
+                    dirtyFiles.clear();
+                    dirty = false;
+                    purgeInvalid = false;
+                }
+                snapshot = build();
+            }
+            else if (dirty || purgeInvalid)
+            {
+                snapshot = update(snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    private Snapshot build()
+    {
+        final Map<VirtualFile, List<String>> provides = ClosureCallIndex.getNamespacesByFile(project, ClosureNamespaceIndex.NAME);
+        final Map<VirtualFile, List<String>> fileRequires = ClosureCallIndex.getNamespacesByFile(project, ClosureRequireIndex.NAME);
+        final Builder builder = new Builder(null);
+
+        for (Map.Entry<VirtualFile, List<String>> entry : provides.entrySet())
+        {
+            ProgressManager.checkCanceled();
+
+            final List<String> required = fileRequires.get(entry.getKey());
+            builder.addFile(entry.getKey(), entry.getValue(), required != null ? required : Collections.<String>emptyList());
+        }
+        return builder.freeze();
+    }
+
+    /**
+     * Applies the pending changes to a copy of the graph. The pending changes are restored if the update is
+     * cancelled, so the next query retries them.
+     */
+    private Snapshot update(final Snapshot previous)
+    {
+        final List<VirtualFile> files;
+        final boolean purge;
+
+        synchronized (dirtyFiles)
+        {
+            files = new ArrayList<VirtualFile>(dirtyFiles);
+            purge = purgeInvalid;
+            dirtyFiles.clear();
+            dirty = false;
+            purgeInvalid = false;
+        }
+
+        boolean completed = false;
+
+        try
+        {
+            final Builder builder = new Builder(previous);
+
+            if (purge)
+            {
+                builder.purge(GlobalSearchScope.allScope(project));
+            }
+
+            for (VirtualFile file : collectFiles(files))
+            {
+                ProgressManager.checkCanceled();
+
+                builder.removeFile(file);
+
+                if (file.isValid())
+                {
+                    final CharSequence text = ClosureDeclarations.loadText(file);
+                    builder.addFile(file, ClosureDeclarations.findProvides(text), ClosureDeclarations.findRequires(text));
+                }
+            }
+
+            final Snapshot result = builder.freeze();
+            completed = true;
+            return result;
+        }
+        finally
+        {
+            if (!completed)
+            {
+                synchronized (dirtyFiles)
+                {
+                    dirtyFiles.addAll(files);
+                    dirty |= !files.isEmpty();
+                    purgeInvalid |= purge;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param changed changed files and directories
+     * @return the changed files and the javascript files of the project below the changed directories
+     */
+    private Collection<VirtualFile> collectFiles(final List<VirtualFile> changed)
+    {
+        final Set<VirtualFile> files = new HashSet<VirtualFile>();
+        final GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+
+        for (VirtualFile root : changed)
+        {
+            if (!root.isDirectory())
+            {
+                files.add(root);
+                continue;
+            }
+
+            if (!root.isValid())
+            {
+                continue;
+            }
+
+            VfsUtilCore.visitChildrenRecursively(root, new VirtualFileVisitor()
+            {
+                @Override
+                public boolean visitFile(@NotNull final VirtualFile file)
+                {
+                    if (!scope.contains(file))
+                    {
+                        return false;
+                    }
+
+                    if (!file.isDirectory() && ClosureDeclarations.isJavaScriptFile(file))
+                    {
+                        files.add(file);
+                    }
+                    return true;
+                }
+            });
+        }
+        return files;
+    }
+
+    /**
+     * Finds the strongly connected components with an iterative version of Tarjan's algorithm.
+     *
+     * @param requires required namespace ids per namespace id
+     * @return component number per namespace id
+     */
+    private static int[] computeComponents(final int[][] requires)
+    {
+        final int size = requires.length;
+        final int[] index = new int[size];
+        final int[] lowLink = new int[size];
+        final int[] components = new int[size];
+        final int[] path = new int[size];
+        final int[] cursors = new int[size];
+        final BitSet onStack = new BitSet(size);
+        final TIntArrayList stack = new TIntArrayList();
+        int counter = 0;
+        int componentCount = 0;
+
+        Arrays.fill(index, -1);
+
+        for (int root = 0; root < size; root++)
+        {
+            if (index[root] != -1)
+            {
+                continue;
+            }
+
+            ProgressManager.checkCanceled();
+
+            int depth = 0;
+            path[0] = root;
+            cursors[0] = 0;
+            index[root] = lowLink[root] = counter++;
+            stack.add(root);
+            onStack.set(root);
+
+            while (depth >= 0)
+            {
+                final int node = path[depth];
+                final int[] edges = requires[node];
+
+                if (cursors[depth] < edges.length)
+                {
+                    final int next = edges[cursors[depth]++];
+
+                    if (index[next] == -1)
+                    {
+                        index[next] = lowLink[next] = counter++;
+                        stack.add(next);
+                        onStack.set(next);
+                        depth++;
+                        path[depth] = next;
+                        cursors[depth] = 0;
+                    }
+                    else if (onStack.get(next))
+                    {
+                        lowLink[node] = Math.min(lowLink[node], index[next]);
+                    }
+                    continue;
+                }
+
+                if (lowLink[node] == index[node])
+                {
+                    final int component = componentCount++;
+                    int member;
+
+                    do
+                    {
+                        member = stack.remove(stack.size() - 1);
+                        onStack.clear(member);
+                        components[member] = component;
+                    }
+                    while (member != node);
+                }
+
+                depth--;
+
+                if (depth >= 0)
+                {
+                    final int parent = path[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Immutable graph. Namespace ids index the arrays, the id map is never modified once published.
+     */
+    private static final class Snapshot
+    {
+        final TObjectIntHashMap<String> ids;
+        final String[] names;
+        final int[][] requires;
+        final int[][] dependents;
+        final Map<VirtualFile, FileRecord> records;
+        final int[] components;
+
+        /**
+         * Per namespace id: 0 while unknown, count + 1 for an exact count, -(limit + 1) if a walk bounded by
+         * limit found more namespaces
+         */
+        final AtomicIntegerArray transitiveCounts;
+
+        Snapshot(final TObjectIntHashMap<String> ids, final String[] names, final int[][] requires, final int[][] dependents,
+                 final Map<VirtualFile, FileRecord> records)
+        {
+            this.ids = ids;
+            this.names = names;
+            this.requires = requires;
+            this.dependents = dependents;
+            this.records = records;
+            this.components = computeComponents(requires);
+            this.transitiveCounts = new AtomicIntegerArray(names.length);
+        }
+
+        int getTransitiveCount(final int id, final int limit)
+        {
+            final int cached = transitiveCounts.get(id);
+
+            if (cached > 0)
+            {
+                return Math.min(cached - 1, limit + 1);
+            }
+            if (cached < 0 && -cached - 1 >= limit)
+            {
+                return limit + 1;
+            }
+
+            final int count = countReachable(id, limit);
+            transitiveCounts.set(id, count > limit ? -(limit + 1) : count + 1);
+            return count;
+        }
+
+        /**
+         * Breadth first walk over the requires, the namespace itself is never counted.
+         *
+         * @return number of reachable namespaces, limit + 1 if there are more than limit
+         */
+        private int countReachable(final int start, final int limit)
+        {
+            final BitSet visited = new BitSet(names.length);
+            final TIntArrayList queue = new TIntArrayList();
+            int count = 0;
+            visited.set(start);
+            queue.add(start);
+
+            for (int head = 0; head < queue.size(); head++)
+            {
+                for (int next : requires[queue.getQuick(head)])
+                {
+                    if (!visited.get(next))
+                    {
+                        visited.set(next);
+                        queue.add(next);
+
+                        if (++count > limit)
+                        {
+                            return count;
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Local copy of a snapshot being changed. Edge arrays are copied into lists only when a file touches them,
+     * the others are shared with the previous snapshot.
+     */
+    private static final class Builder
+    {
+        private final TObjectIntHashMap<String> ids;
+        private final List<String> names;
+        private final List<int[]> requires;
+        private final List<int[]> dependents;
+        private final Map<Integer, TIntArrayList> changedRequires = new HashMap<Integer, TIntArrayList>();
+        private final Map<Integer, TIntArrayList> changedDependents = new HashMap<Integer, TIntArrayList>();
+        private final Map<VirtualFile, FileRecord> records;
+
+        @SuppressWarnings("unchecked")
+        Builder(@Nullable final Snapshot previous)
+        {
+            if (previous == null)
+            {
+                ids = new TObjectIntHashMap<String>();
+                names = new ArrayList<String>();
+                requires = new ArrayList<int[]>();
+                dependents = new ArrayList<int[]>();
+                records = new HashMap<VirtualFile, FileRecord>();
+            }
+            else
+            {
+                ids = (TObjectIntHashMap<String>) previous.ids.clone();
+                names = new ArrayList<String>(Arrays.asList(previous.names));
+                requires = new ArrayList<int[]>(Arrays.asList(previous.requires));
+                dependents = new ArrayList<int[]>(Arrays.asList(previous.dependents));
+                records = new HashMap<VirtualFile, FileRecord>(previous.records);
+            }
+        }
+
+        void addFile(final VirtualFile file, final List<String> provided, final List<String> required)
+        {
+            final FileRecord record = new FileRecord(intern(provided), intern(required));
+            records.put(file, record);
+
+            for (int provide : record.provides)
+            {
+                edit(changedRequires, requires, provide).add(record.requires);
+            }
+            for (int require : record.requires)
+            {
+                edit(changedDependents, dependents, require).add(record.provides);
+            }
+        }
+
+        void removeFile(final VirtualFile file)
+        {
+            final FileRecord record = records.remove(file);
+
+            if (record == null)
+            {
+                return;
+            }
+
+            for (int provide : record.provides)
+            {
+                final TIntArrayList edges = edit(changedRequires, requires, provide);
+                for (int require : record.requires)
+                {
+                    removeOne(edges, require);
+                }
+            }
+            for (int require : record.requires)
+            {
+                final TIntArrayList edges = edit(changedDependents, dependents, require);
+                for (int provide : record.provides)
+                {
+                    removeOne(edges, provide);
+                }
+            }
+        }
+
+        /**
+         * Removes the files that were deleted or left the project scope.
+         */
+        void purge(final GlobalSearchScope scope)
+        {
+            for (VirtualFile file : new ArrayList<VirtualFile>(records.keySet()))
+            {
+                if (!file.isValid() || !scope.contains(file))
+                {
+                    removeFile(file);
+                }
+            }
+        }
+
+        Snapshot freeze()
+        {
+            final int[][] frozenRequires = requires.toArray(new int[requires.size()][]);
+            final int[][] frozenDependents = dependents.toArray(new int[dependents.size()][]);
+
+            for (Map.Entry<Integer, TIntArrayList> entry : changedRequires.entrySet())
+            {
+                frozenRequires[entry.getKey()] = entry.getValue().toNativeArray();
+            }
+            for (Map.Entry<Integer, TIntArrayList> entry : changedDependents.entrySet())
+            {
+                frozenDependents[entry.getKey()] = entry.getValue().toNativeArray();
+            }
+            return new Snapshot(ids, names.toArray(new String[names.size()]), frozenRequires, frozenDependents, records);
+        }
+
+        private static TIntArrayList edit(final Map<Integer, TIntArrayList> changed, final List<int[]> edges, final int id)
+        {
+            TIntArrayList list = changed.get(id);
+
+            if (list == null)
+            {
+                list = new TIntArrayList(edges.get(id));
+                changed.put(id, list);
+            }
+            return list;
+        }
+
+        private static void removeOne(final TIntArrayList list, final int value)
+        {
+            final int index = list.indexOf(value);
+            if (index != -1)
+            {
+                list.remove(index);
+            }
+        }
+
+        private int[] intern(final List<String> namespaces)
+        {
+            final int[] result = new int[namespaces.size()];
+
+            for (int i = 0; i < result.length; i++)
+            {
+                final String namespace = namespaces.get(i);
+
+                if (ids.containsKey(namespace))
+                {
+                    result[i] = ids.get(namespace);
+                }
+                else
+                {
+                    result[i] = names.size();
+                    ids.put(namespace, result[i]);
+                    names.add(namespace);
+                    requires.add(NO_IDS);
+                    dependents.add(NO_IDS);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class FileRecord
+    {
+        final int[] provides;
+        final int[] requires;
+
+        FileRecord(final int[] provides, final int[] requires)
+        {
+            this.provides = provides;
+            this.requires = requires;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.codeInsight.daemon.GroupNames;
+import com.intellij.codeInspection.LocalInspectionTool;
+import com.intellij.codeInspection.ProblemHighlightType;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.codeInspection.ui.SingleIntegerFieldOptionsPanel;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiElementVisitor;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.JComponent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Reports goog.require statements that close a dependency cycle and provided namespaces with too many
+ * transitive dependencies, using the project wide {@link ClosureDependencyGraph}. The declarations of the file
+ * are read from its text and the file filters of {@link ValidateRequireStatementsInspection} apply.
+ */
+public class ClosureDependencyInspection extends LocalInspectionTool
+{
+    /**
+     * Provided namespaces with more transitive dependencies than this are reported
+     */
+    public int maxTransitiveDependencies = 500;
+
+    @NotNull
+    public String getDisplayName()
+    {
+        return "Check closure namespaces for require cycles and dependency counts.";
+    }
+
+    @NotNull
+    public String getGroupDisplayName()
+    {
+        return GroupNames.IMPORTS_GROUP_NAME;
+    }
+
+    @NotNull
+    public String getShortName()
+    {
+        return "ClosureDependencies";
+    }
+
+    public boolean isEnabledByDefault()
+    {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public JComponent createOptionsPanel()
+    {
+        return new SingleIntegerFieldOptionsPanel("Maximum transitive dependencies per namespace:", this,
+                "maxTransitiveDependencies");
+    }
+
+    @NotNull
+    @Override
+    public PsiElementVisitor buildVisitor(@NotNull final ProblemsHolder holder, boolean isOnTheFly)
+    {
+        final int maxDependencies = maxTransitiveDependencies;
+
+        return new PsiElementVisitor()
+        {
+            @Override
+            public void visitFile(final PsiFile file)
+            {
+                super.visitFile(file);
+
+                if (!file.getFileType().getDefaultExtension().equals("js"))
+                {
+                    return;
+                }
+
+                // declarations are read from the text, the tree is only built to report a statement
+                final CharSequence text = file.getViewProvider().getContents();
+
+                if (ValidateRequireStatementsInspection.getOptions(file).isSkipped(text))
+                {
+                    return;
+                }
+
+                final Map<String, Integer> provides = findStatements(ClosureDeclarations.PROVIDE_PATTERN, text);
+
+                if (provides.isEmpty())
+                {
+                    return;
+                }
+
+                final Map<String, Integer> requires = findStatements(ClosureDeclarations.REQUIRE_PATTERN, text);
+                final ClosureDependencyGraph graph = ClosureDependencyGraph.getInstance(file.getProject());
+                final Set<String> cyclic = graph.findCyclicRequires(provides.keySet(), requires.keySet());
+
+                for (Map.Entry<String, Integer> require : requires.entrySet())
+                {
+                    if (cyclic.contains(require.getKey()))
+                    {
+                        final PsiElement statement = findStatement(file, require.getValue());
+                        if (statement != null)
+                        {
+                            holder.registerProblem(statement, "goog.require cycle: " + describeCycle(graph, provides.keySet(), require.getKey()),
+                                    ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+                        }
+                    }
+                }
+
+                for (Map.Entry<String, Integer> provide : provides.entrySet())
+                {
+                    // the walk stops once the limit is exceeded, so the exact count is not known
+                    final int count = graph.getTransitiveDependencyCount(provide.getKey(), maxDependencies);
+
+                    final PsiElement statement = count > maxDependencies ? findStatement(file, provide.getValue()) : null;
+
+                    if (statement != null)
+                    {
+                        holder.registerProblem(statement, "'" + provide.getKey() + "' transitively requires more than the allowed "
+                                + maxDependencies + " namespaces", ProblemHighlightType.WEAK_WARNING);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * @param pattern provide or require pattern of {@link ClosureDeclarations}
+     * @param text    file text
+     * @return declared namespaces mapped to the offset of their first declaration, in source order
+     */
+    private static Map<String, Integer> findStatements(final Pattern pattern, final CharSequence text)
+    {
+        final Map<String, Integer> statements = new LinkedHashMap<String, Integer>();
+        final Matcher matcher = pattern.matcher(text);
+
+        while (matcher.find())
+        {
+            if (!statements.containsKey(matcher.group(2)))
+            {
+                statements.put(matcher.group(2), matcher.start());
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * @param file   javascript file
+     * @param offset start of a goog.provide or goog.require call
+     * @return the outermost element starting at the call, normally its statement
+     */
+    @Nullable
+    private static PsiElement findStatement(final PsiFile file, final int offset)
+    {
+        PsiElement element = file.findElementAt(offset);
+
+        while (element != null && element.getParent() != null && element.getParent() != file
+                && element.getParent().getTextRange().getStartOffset() == offset)
+        {
+            element = element.getParent();
+        }
+        return element;
+    }
+
+    private static String describeCycle(final ClosureDependencyGraph graph, final Collection<String> provides, final String require)
+    {
+        for (String provide : provides)
+        {
+            final List<String> path = graph.findRequirePath(require, provide);
+
+            if (path != null)
+            {
+                final List<String> cycle = new ArrayList<String>(path.size() + 1);
+                cycle.add(provide);
+                cycle.addAll(path);
+                return StringUtil.join(cycle, " -> ");
+            }
+        }
+        return require;
+    }
+}
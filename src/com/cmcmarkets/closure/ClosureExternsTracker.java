@@ -0,0 +1,135 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Tracks changes below the configured externs files and directories, so the project globals are only rebuilt
+ * when an externs file is created, changed, moved or deleted rather than on every change of the file system.
+ * Also remembers the last globals built, which are reused while the declared names stay the same.
+ */
+public class ClosureExternsTracker implements ModificationTracker
+{
+    private final Project project;
+    private final SimpleModificationTracker tracker = new SimpleModificationTracker();
+    private volatile ClosureGlobals globals;
+
+    public ClosureExternsTracker(@NotNull final Project project)
+    {
+        this.project = project;
+
+        project.getMessageBus().connect(project).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener()
+        {
+            public void before(@NotNull final List<? extends VFileEvent> events)
+            {
+                // deletions and the old location of moves and renames are only known before the change
+                fileSystemChanged(events);
+            }
+
+            public void after(@NotNull final List<? extends VFileEvent> events)
+            {
+                fileSystemChanged(events);
+            }
+        });
+    }
+
+    public static ClosureExternsTracker getInstance(@NotNull final Project project)
+    {
+        return ServiceManager.getService(project, ClosureExternsTracker.class);
+    }
+
+    public long getModificationCount()
+    {
+        return tracker.getModificationCount();
+    }
+
+    /**
+     * @param built globals just built from the settings and externs
+     * @return the previously built globals if they declare the same names, so their version is kept and caches
+     * depending on it stay valid, otherwise the given globals
+     */
+    @NotNull
+    ClosureGlobals reuse(@NotNull final ClosureGlobals built)
+    {
+        final ClosureGlobals previous = globals;
+
+        if (previous != null && previous.sameNames(built))
+        {
+            return previous;
+        }
+        globals = built;
+        return built;
+    }
+
+    private void fileSystemChanged(final List<? extends VFileEvent> events)
+    {
+        final List<String> externs = ClosureProjectSettings.getInstance(project).externs;
+
+        if (externs.isEmpty())
+        {
+            return;
+        }
+
+        for (VFileEvent event : events)
+        {
+            if (isRelevant(externs, event.getPath()))
+            {
+                tracker.incModificationCount();
+                return;
+            }
+
+            if (event instanceof VFileMoveEvent)
+            {
+                final VFileMoveEvent move = (VFileMoveEvent) event;
+
+                if (isRelevant(externs, move.getOldParent().getPath() + '/' + move.getFile().getName())
+                        || isRelevant(externs, move.getNewParent().getPath() + '/' + move.getFile().getName()))
+                {
+                    tracker.incModificationCount();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the path lies inside an externs directory, is an externs file or is a directory containing
+     * one, for example a checkout creating the externs directory
+     */
+    private static boolean isRelevant(final List<String> externs, @Nullable final String path)
+    {
+        if (path == null)
+        {
+            return false;
+        }
+
+        for (String extern : externs)
+        {
+            final String root = FileUtil.toSystemIndependentName(extern.trim());
+
+            if (root.length() > 0 && (FileUtil.isAncestor(root, path, false) || FileUtil.isAncestor(path, root, true)))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
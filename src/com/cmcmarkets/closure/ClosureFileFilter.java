@@ -0,0 +1,91 @@
+package com.cmcmarkets.closure;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Cheap checks on the raw file text, used to decide whether a file is worth walking at all.
+ */
+final class ClosureFileFilter
+{
+    /**
+     * Number of characters sampled from the start of the file
+     */
+    private static final int SAMPLE_LENGTH = 65536;
+
+    /**
+     * Average line length above which a file is considered minified or generated
+     */
+    private static final int MINIFIED_LINE_LENGTH = 300;
+
+    private static final String CLOSURE_PREFIX = "goog.";
+
+    private ClosureFileFilter()
+    {
+    }
+
+    /**
+     * @param text file text
+     * @return true if the start of the file has an average line length typical for minified code
+     */
+    static boolean isMinified(@NotNull final CharSequence text)
+    {
+        final int length = Math.min(text.length(), SAMPLE_LENGTH);
+
+        if (length < MINIFIED_LINE_LENGTH)
+        {
+            return false;
+        }
+
+        int lines = 1;
+
+        for (int i = 0; i < length; i++)
+        {
+            if (text.charAt(i) == '\n')
+            {
+                lines++;
+            }
+        }
+        return length / lines > MINIFIED_LINE_LENGTH;
+    }
+
+    /**
+     * Whether the text mentions the closure library at all. Files without a single <code>goog.</code> are
+     * vendor, test or transpiled code that cannot declare or use closure namespaces, so they are not walked.
+     *
+     * @param text file text
+     * @return true if the text contains <code>goog.</code>
+     */
+    static boolean usesClosure(@NotNull final CharSequence text)
+    {
+        final int last = text.length() - CLOSURE_PREFIX.length();
+
+        for (int i = 0; i <= last; i++)
+        {
+            // cheap first character test before comparing the rest of the prefix
+            if (text.charAt(i) == 'g' && matchesPrefix(text, i))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesPrefix(final CharSequence text, final int offset)
+    {
+        for (int i = 1; i < CLOSURE_PREFIX.length(); i++)
+        {
+            if (text.charAt(offset + i) != CLOSURE_PREFIX.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
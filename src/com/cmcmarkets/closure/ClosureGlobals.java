@@ -0,0 +1,391 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Dotted names that never need a goog.require: the built in javascript globals, the globals listed in the
+ * project settings and every name declared by the configured closure externs files. Names are kept in a trie
+ * of dot separated segments with sorted child arrays, so thousands of externs symbols sharing long prefixes take
+ * little memory and a lookup walks the name without creating substrings.
+ * <p/>
+ * The project instance is cached and only rebuilt when the settings or one of the externs files change. A rebuild
+ * declaring the same names keeps the previous instance and therefore its version.
+ */
+final class ClosureGlobals
+{
+    private static final String[] BUILT_IN = {
+            "Math", "Number", "String", "Boolean", "Array", "Blob", "Date", "Object", "RegEx", "Text", "goog", "JSON",
+            "...*", "console"
+    };
+
+    /**
+     * Source of the instance versions, declared before the first instance is created
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    /**
+     * Only the built in globals, used where no project settings apply such as indexing
+     */
+    static final ClosureGlobals BUILT_IN_GLOBALS = new Builder().build();
+
+    private static final Key<CachedValue<ClosureGlobals>> GLOBALS_KEY = Key.create("closure.globals");
+
+    /**
+     * Top level declarations of an externs file: var, let, const and function names and dotted assignments or
+     * declarations at the start of a line
+     */
+    private static final Pattern DECLARATION_PATTERN = Pattern.compile(
+            "^[ \\t]*(?:(?:var|let|const|function)[ \\t]+([A-Za-z_$][\\w$]*)|([A-Za-z_$][\\w$]*(?:\\.[A-Za-z_$][\\w$]*)+)[ \\t]*[=;])",
+            Pattern.MULTILINE);
+
+    private final Node root;
+    private final long version = VERSIONS.incrementAndGet();
+
+    private ClosureGlobals(final Node root)
+    {
+        this.root = root;
+    }
+
+    /**
+     * @param project current project
+     * @return globals of the project, cached until the settings or an externs file change
+     */
+    @NotNull
+    static ClosureGlobals getInstance(@NotNull final Project project)
+    {
+        return CachedValuesManager.getManager(project).getCachedValue(project, GLOBALS_KEY, new CachedValueProvider<ClosureGlobals>()
+        {
+            public Result<ClosureGlobals> compute()
+            {
+                final ClosureProjectSettings settings = ClosureProjectSettings.getInstance(project);
+                final Builder builder = new Builder();
+                final List<Object> dependencies = new ArrayList<Object>();
+                dependencies.add(settings.getModificationTracker());
+                dependencies.add(ClosureExternsTracker.getInstance(project));
+
+                for (String global : settings.allowedGlobals)
+                {
+                    builder.add(global.trim());
+                }
+
+                for (String path : settings.externs)
+                {
+                    final VirtualFile root = LocalFileSystem.getInstance().findFileByPath(FileUtil.toSystemIndependentName(path.trim()));
+
+                    if (root != null)
+                    {
+                        for (VirtualFile file : collectExterns(root))
+                        {
+                            builder.addExterns(ClosureDeclarations.loadText(file));
+                            dependencies.add(file);
+                        }
+                    }
+                }
+
+                return Result.create(ClosureExternsTracker.getInstance(project).reuse(builder.build()), dependencies);
+            }
+        }, false);
+    }
+
+    /**
+     * Creates globals outside of a project, for example for the command line runner.
+     *
+     * @param externs texts of closure externs files
+     * @return built in globals plus the names declared by the externs
+     */
+    @NotNull
+    static ClosureGlobals create(@NotNull final Collection<? extends CharSequence> externs)
+    {
+        final Builder builder = new Builder();
+
+        for (CharSequence text : externs)
+        {
+            builder.addExterns(text);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Tracker for caches computed with the project globals; changes whenever the globals are rebuilt.
+     *
+     * @param project current project
+     * @return modification tracker
+     */
+    @NotNull
+    static ModificationTracker getModificationTracker(@NotNull final Project project)
+    {
+        return new ModificationTracker()
+        {
+            public long getModificationCount()
+            {
+                return getInstance(project).version;
+            }
+        };
+    }
+
+    /**
+     * @param name dotted name
+     * @return true if exactly this name is declared
+     */
+    boolean contains(@NotNull final String name)
+    {
+        Node node = root;
+        int start = 0;
+
+        while (node != null)
+        {
+            int end = name.indexOf('.', start);
+            if (end == -1)
+            {
+                end = name.length();
+            }
+
+            node = node.find(name, start, end);
+
+            if (end == name.length())
+            {
+                return node != null && node.declared;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * @param other globals to compare with
+     * @return true if both declare exactly the same names
+     */
+    boolean sameNames(@NotNull final ClosureGlobals other)
+    {
+        return root.sameAs(other.root);
+    }
+
+    private static Collection<VirtualFile> collectExterns(final VirtualFile root)
+    {
+        final List<VirtualFile> files = new ArrayList<VirtualFile>();
+
+        VfsUtilCore.visitChildrenRecursively(root, new VirtualFileVisitor()
+        {
+            @Override
+            public boolean visitFile(@NotNull final VirtualFile file)
+            {
+                if (!file.isDirectory() && ClosureDeclarations.isJavaScriptFile(file))
+                {
+                    files.add(file);
+                }
+                return true;
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Trie node, children are sorted by segment for binary search
+     */
+    private static final class Node
+    {
+        private static final String[] NO_SEGMENTS = new String[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        /**
+         * Shared by all leaves, which are the majority of the nodes
+         */
+        static final Node DECLARED_LEAF = new Node(true, NO_SEGMENTS, NO_CHILDREN);
+
+        final boolean declared;
+        final String[] segments;
+        final Node[] children;
+
+        Node(final boolean declared, final String[] segments, final Node[] children)
+        {
+            this.declared = declared;
+            this.segments = segments;
+            this.children = children;
+        }
+
+        Node find(final String name, final int from, final int to)
+        {
+            int low = 0;
+            int high = segments.length - 1;
+
+            while (low <= high)
+            {
+                final int middle = (low + high) >>> 1;
+                final int comparison = compare(segments[middle], name, from, to);
+
+                if (comparison < 0)
+                {
+                    low = middle + 1;
+                }
+                else if (comparison > 0)
+                {
+                    high = middle - 1;
+                }
+                else
+                {
+                    return children[middle];
+                }
+            }
+            return null;
+        }
+
+        boolean sameAs(final Node other)
+        {
+            if (this == other)
+            {
+                return true;
+            }
+
+            if (declared != other.declared || !Arrays.equals(segments, other.segments))
+            {
+                return false;
+            }
+
+            for (int i = 0; i < children.length; i++)
+            {
+                if (!children[i].sameAs(other.children[i]))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Compares like {@link String#compareTo} against the given range of the name.
+         */
+        private static int compare(final String segment, final String name, final int from, final int to)
+        {
+            final int length = Math.min(segment.length(), to - from);
+
+            for (int i = 0; i < length; i++)
+            {
+                final int difference = segment.charAt(i) - name.charAt(from + i);
+                if (difference != 0)
+                {
+                    return difference;
+                }
+            }
+            return segment.length() - (to - from);
+        }
+    }
+
+    /**
+     * Mutable trie used while reading the sources, frozen into {@link Node}s afterwards
+     */
+    private static final class Builder
+    {
+        private final MutableNode root = new MutableNode();
+
+        Builder()
+        {
+            for (String global : BUILT_IN)
+            {
+                add(global);
+            }
+        }
+
+        void add(final String name)
+        {
+            if (name.length() == 0)
+            {
+                return;
+            }
+
+            MutableNode node = root;
+
+            for (String segment : name.split("\\.", -1))
+            {
+                MutableNode child = node.children.get(segment);
+                if (child == null)
+                {
+                    child = new MutableNode();
+                    node.children.put(segment.intern(), child);
+                }
+                node = child;
+            }
+            node.declared = true;
+        }
+
+        void addExterns(final CharSequence text)
+        {
+            final Matcher matcher = DECLARATION_PATTERN.matcher(text);
+
+            while (matcher.find())
+            {
+                final String name = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+
+                // members of prototypes are never referenced by their dotted name
+                if (name.contains(".prototype"))
+                {
+                    continue;
+                }
+
+                // a.b.c = ... implies that a and a.b exist as well
+                for (int dot = name.indexOf('.'); dot != -1; dot = name.indexOf('.', dot + 1))
+                {
+                    add(name.substring(0, dot));
+                }
+                add(name);
+            }
+        }
+
+        ClosureGlobals build()
+        {
+            return new ClosureGlobals(root.freeze());
+        }
+    }
+
+    private static final class MutableNode
+    {
+        final Map<String, MutableNode> children = new TreeMap<String, MutableNode>();
+        boolean declared;
+
+        Node freeze()
+        {
+            if (children.isEmpty())
+            {
+                return declared ? Node.DECLARED_LEAF : new Node(false, Node.NO_SEGMENTS, Node.NO_CHILDREN);
+            }
+
+            final String[] segments = children.keySet().toArray(new String[children.size()]);
+            final Node[] frozen = new Node[segments.length];
+
+            for (int i = 0; i < segments.length; i++)
+            {
+                frozen[i] = children.get(segments[i]).freeze();
+            }
+
+            // TreeMap keeps the keys sorted with String.compareTo, the order Node.find expects
+            return new Node(declared, segments, frozen);
+        }
+    }
+}
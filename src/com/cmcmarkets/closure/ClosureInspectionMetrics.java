@@ -0,0 +1,153 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.components.ServiceManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Per file cost of the require statement inspection. The latest run of every file is kept together with totals
+ * since the last reset, so a batch inspection can be measured by resetting before and exporting after it. At most
+ * {@link #MAX_FILES} files are listed, further files only count towards the totals.
+ */
+public class ClosureInspectionMetrics
+{
+    /**
+     * Files listed individually, bounds the memory of long sessions that never reset
+     */
+    static final int MAX_FILES = 10000;
+
+    private final ConcurrentMap<String, FileMetrics> files = new ConcurrentHashMap<String, FileMetrics>();
+
+    private final AtomicLong totalRuns = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong totalCollectNanos = new AtomicLong();
+    private final AtomicLong totalNodes = new AtomicLong();
+    private final AtomicLong totalReferences = new AtomicLong();
+    private final AtomicLong totalClassifierCalls = new AtomicLong();
+    private final AtomicLong totalProblems = new AtomicLong();
+    private final AtomicLong unlistedRuns = new AtomicLong();
+
+    public static ClosureInspectionMetrics getInstance()
+    {
+        return ServiceManager.getService(ClosureInspectionMetrics.class);
+    }
+
+    /**
+     * Records one inspection run of a file.
+     *
+     * @param path     file path
+     * @param nanos    wall time of the run including a cached session lookup
+     * @param session  session the run reported from
+     * @param cached   true if the session came from the cache and was not collected by this run
+     * @param problems number of problems registered
+     */
+    void record(@NotNull final String path, final long nanos, @NotNull final ValidationSession session,
+                final boolean cached, final int problems)
+    {
+        final FileMetrics metrics = new FileMetrics(path, nanos, cached ? 0 : session.collectNanos, session.nodesVisited,
+                session.referencesClassified, session.classifierCalls, problems);
+
+        // the size check may let a few concurrent files past the limit, which is harmless
+        if (files.size() < MAX_FILES || files.containsKey(path))
+        {
+            files.put(path, metrics);
+        }
+        else
+        {
+            unlistedRuns.incrementAndGet();
+        }
+
+        totalRuns.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        totalProblems.addAndGet(problems);
+
+        if (!cached)
+        {
+            totalCollectNanos.addAndGet(session.collectNanos);
+            totalNodes.addAndGet(session.nodesVisited);
+            totalReferences.addAndGet(session.referencesClassified);
+            totalClassifierCalls.addAndGet(session.classifierCalls);
+        }
+    }
+
+    public void reset()
+    {
+        files.clear();
+        totalRuns.set(0);
+        totalNanos.set(0);
+        totalCollectNanos.set(0);
+        totalNodes.set(0);
+        totalReferences.set(0);
+        totalClassifierCalls.set(0);
+        totalProblems.set(0);
+        unlistedRuns.set(0);
+    }
+
+    /**
+     * @return latest run of every file, slowest first
+     */
+    @NotNull
+    public List<FileMetrics> getSlowestFiles()
+    {
+        final List<FileMetrics> result = new ArrayList<FileMetrics>(files.values());
+
+        Collections.sort(result, new Comparator<FileMetrics>()
+        {
+            public int compare(final FileMetrics o1, final FileMetrics o2)
+            {
+                return o1.nanos == o2.nanos ? 0 : o1.nanos > o2.nanos ? -1 : 1;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return totals since the last reset, one column per {@link FileMetrics} counter
+     */
+    @NotNull
+    public FileMetrics getTotals()
+    {
+        final long unlisted = unlistedRuns.get();
+        final String runs = totalRuns.get() + " runs" + (unlisted > 0 ? ", " + unlisted + " runs of unlisted files" : "");
+
+        return new FileMetrics("Total (" + runs + ")", totalNanos.get(), totalCollectNanos.get(),
+                totalNodes.get(), totalReferences.get(), totalClassifierCalls.get(), totalProblems.get());
+    }
+
+    public static final class FileMetrics
+    {
+        public final String path;
+        public final long nanos;
+        public final long collectNanos;
+        public final long nodesVisited;
+        public final long referencesClassified;
+        public final long classifierCalls;
+        public final long problems;
+
+        FileMetrics(final String path, final long nanos, final long collectNanos, final long nodesVisited,
+                    final long referencesClassified, final long classifierCalls, final long problems)
+        {
+            this.path = path;
+            this.nanos = nanos;
+            this.collectNanos = collectNanos;
+            this.nodesVisited = nodesVisited;
+            this.referencesClassified = referencesClassified;
+            this.classifierCalls = classifierCalls;
+            this.problems = problems;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.util.xmlb.XmlSerializerUtil;
+import com.intellij.util.xmlb.annotations.Transient;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ */
+@State(name = "ClosurePluginSettings", storages = @Storage("closure.xml"))
+public class ClosureProjectSettings implements PersistentStateComponent<ClosureProjectSettings>
+{
+    /**
+     * deps.js file kept up to date on save, empty to disable
+     */
+    public String depsFile = "";
+
+    /**
+     * Directory containing closure's base.js, paths in deps.js are relative to it. The directory of the deps
+     * file is used when empty.
+     */
+    public String closureBaseDir = "";
+
+    /**
+     * Whether editor highlighting of the require statement checks runs as a debounced external annotator
+     * instead of an on the fly inspection
+     */
+    public boolean useExternalAnnotator = false;
+
+    /**
+     * Whether the goog.require statements of changed files are checked before a commit
+     */
+    public boolean checkBeforeCommit = true;
+
+    /**
+     * Closure externs files or directories, every name they declare is allowed without goog.require
+     */
+    public List<String> externs = new ArrayList<String>();
+
+    /**
+     * Further dotted names allowed without goog.require
+     */
+    public List<String> allowedGlobals = new ArrayList<String>();
+
+    private final SimpleModificationTracker modificationTracker = new SimpleModificationTracker();
+
+    public static ClosureProjectSettings getInstance(@NotNull final Project project)
+    {
+        return ServiceManager.getService(project, ClosureProjectSettings.class);
+    }
+
+    /**
+     * @return tracker incremented whenever the settings are loaded or changed
+     */
+    @Transient
+    @NotNull
+    public ModificationTracker getModificationTracker()
+    {
+        return modificationTracker;
+    }
+
+    /**
+     * Must be called after the settings were changed.
+     */
+    public void settingsChanged()
+    {
+        modificationTracker.incModificationCount();
+    }
+
+    @NotNull
+    public ClosureProjectSettings getState()
+    {
+        return this;
+    }
+
+    public void loadState(@NotNull final ClosureProjectSettings state)
+    {
+        XmlSerializerUtil.copyBean(state, this);
+        settingsChanged();
+    }
+}
@@ -0,0 +1,47 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.ID;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ */
+public class ClosureRequireIndex extends ClosureCallIndex
+{
+    public static final ID<String, Void> NAME = ID.create("com.cmcmarkets.closure.require");
+
+    public ClosureRequireIndex()
+    {
+        super(ClosureDeclarations.REQUIRE_PATTERN);
+    }
+
+    @NotNull
+    public ID<String, Void> getName()
+    {
+        return NAME;
+    }
+
+    /**
+     * Returns the files declaring goog.require for the given namespace.
+     *
+     * @param project   current project
+     * @param namespace closure namespace
+     * @return requiring files
+     */
+    @NotNull
+    public static Collection<VirtualFile> getRequiringFiles(@NotNull final Project project, @NotNull final String namespace)
+    {
+        return FileBasedIndex.getInstance().getContainingFiles(NAME, namespace, GlobalSearchScope.allScope(project));
+    }
+}
@@ -0,0 +1,140 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.TextFieldWithBrowseButton;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.util.ui.FormBuilder;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.JTextArea;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ */
+public class ClosureSettingsConfigurable implements Configurable
+{
+    private final Project project;
+    private TextFieldWithBrowseButton depsFileField;
+    private TextFieldWithBrowseButton closureBaseDirField;
+    private JCheckBox externalAnnotatorCheckBox;
+    private JTextArea externsArea;
+    private JTextArea allowedGlobalsArea;
+
+    public ClosureSettingsConfigurable(@NotNull final Project project)
+    {
+        this.project = project;
+    }
+
+    @Nls
+    public String getDisplayName()
+    {
+        return "Google Closure";
+    }
+
+    @Nullable
+    public String getHelpTopic()
+    {
+        return null;
+    }
+
+    @Nullable
+    public JComponent createComponent()
+    {
+        depsFileField = new TextFieldWithBrowseButton();
+        depsFileField.addBrowseFolderListener("deps.js File", "File regenerated when javascript files are saved",
+                project, FileChooserDescriptorFactory.createSingleFileDescriptor("js"));
+
+        closureBaseDirField = new TextFieldWithBrowseButton();
+        closureBaseDirField.addBrowseFolderListener("Closure Base Directory", "Directory containing base.js",
+                project, FileChooserDescriptorFactory.createSingleFolderDescriptor());
+
+        externalAnnotatorCheckBox = new JCheckBox("Check goog.require statements in the background after typing stops");
+
+        externsArea = new JTextArea(4, 40);
+        allowedGlobalsArea = new JTextArea(4, 40);
+
+        return FormBuilder.createFormBuilder()
+                .addLabeledComponent("deps.js file:", depsFileField)
+                .addLabeledComponent("Closure base.js directory:", closureBaseDirField)
+                .addComponent(externalAnnotatorCheckBox)
+                .addLabeledComponent("Externs files or directories, one per line:", new JBScrollPane(externsArea), true)
+                .addLabeledComponent("Globals allowed without goog.require, one per line:", new JBScrollPane(allowedGlobalsArea), true)
+                .addComponentFillVertically(new JPanel(), 0)
+                .getPanel();
+    }
+
+    public boolean isModified()
+    {
+        final ClosureProjectSettings settings = ClosureProjectSettings.getInstance(project);
+
+        return !depsFileField.getText().equals(settings.depsFile)
+                || !closureBaseDirField.getText().equals(settings.closureBaseDir)
+                || externalAnnotatorCheckBox.isSelected() != settings.useExternalAnnotator
+                || !getLines(externsArea).equals(settings.externs)
+                || !getLines(allowedGlobalsArea).equals(settings.allowedGlobals);
+    }
+
+    public void apply()
+    {
+        final ClosureProjectSettings settings = ClosureProjectSettings.getInstance(project);
+
+        settings.depsFile = depsFileField.getText().trim();
+        settings.closureBaseDir = closureBaseDirField.getText().trim();
+        settings.externs = getLines(externsArea);
+        settings.allowedGlobals = getLines(allowedGlobalsArea);
+        settings.useExternalAnnotator = externalAnnotatorCheckBox.isSelected();
+        settings.settingsChanged();
+        DaemonCodeAnalyzer.getInstance(project).restart();
+        DepsFileUpdater.getInstance(project).rebuild();
+    }
+
+    public void reset()
+    {
+        final ClosureProjectSettings settings = ClosureProjectSettings.getInstance(project);
+
+        depsFileField.setText(settings.depsFile);
+        closureBaseDirField.setText(settings.closureBaseDir);
+        externalAnnotatorCheckBox.setSelected(settings.useExternalAnnotator);
+        externsArea.setText(StringUtil.join(settings.externs, "\n"));
+        allowedGlobalsArea.setText(StringUtil.join(settings.allowedGlobals, "\n"));
+    }
+
+    public void disposeUIResources()
+    {
+        depsFileField = null;
+        closureBaseDirField = null;
+        externalAnnotatorCheckBox = null;
+        externsArea = null;
+        allowedGlobalsArea = null;
+    }
+
+    private static List<String> getLines(final JTextArea area)
+    {
+        final List<String> lines = new ArrayList<String>();
+
+        for (String line : StringUtil.splitByLines(area.getText()))
+        {
+            if (line.trim().length() > 0)
+            {
+                lines.add(line.trim());
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,160 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import gnu.trove.TIntArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Maps every namespace a file references without a goog.require to the ranges of those references, stored as
+ * start and end offset pairs. The index only depends on the file content, so after a restart the results are
+ * read from disk and only files whose content changed are analysed again.
+ * <p/>
+ * Whether a namespace is provided anywhere is not part of the index, it is decided when the index is queried.
+ */
+public class ClosureUnresolvedIndex extends FileBasedIndexExtension<String, int[]>
+{
+    public static final ID<String, int[]> NAME = ID.create("com.cmcmarkets.closure.unresolved");
+
+    private final DataIndexer<String, int[], FileContent> indexer = new DataIndexer<String, int[], FileContent>()
+    {
+        @NotNull
+        public Map<String, int[]> map(@NotNull final FileContent inputData)
+        {
+            final CharSequence text = inputData.getContentAsText();
+
+            if (!ClosureFileFilter.usesClosure(text) || ClosureFileFilter.isMinified(text))
+            {
+                return Collections.emptyMap();
+            }
+
+            final PsiFile file = inputData.getPsiFile();
+            final ValidationSession session = new ValidationSession();
+            // the index may only depend on the file content, project globals are not known here
+            new RequireStatementsCollector(session, ClosureGlobals.BUILT_IN_GLOBALS, false).collect(file);
+
+            final Map<String, TIntArrayList> ranges = new HashMap<String, TIntArrayList>();
+
+            for (Map.Entry<TextRange, String> error : session.errorRanges.entrySet())
+            {
+                TIntArrayList offsets = ranges.get(error.getValue());
+                if (offsets == null)
+                {
+                    offsets = new TIntArrayList(2);
+                    ranges.put(error.getValue(), offsets);
+                }
+                offsets.add(error.getKey().getStartOffset());
+                offsets.add(error.getKey().getEndOffset());
+            }
+
+            final Map<String, int[]> result = new HashMap<String, int[]>(ranges.size());
+
+            for (Map.Entry<String, TIntArrayList> entry : ranges.entrySet())
+            {
+                result.put(entry.getKey(), entry.getValue().toNativeArray());
+            }
+            return result;
+        }
+    };
+
+    private static final DataExternalizer<int[]> OFFSETS_EXTERNALIZER = new DataExternalizer<int[]>()
+    {
+        public void save(@NotNull final DataOutput out, final int[] value) throws IOException
+        {
+            DataInputOutputUtil.writeINT(out, value.length);
+
+            // offsets are in source order, so the deltas stay small
+            int previous = 0;
+            for (int offset : value)
+            {
+                DataInputOutputUtil.writeINT(out, offset - previous);
+                previous = offset;
+            }
+        }
+
+        public int[] read(@NotNull final DataInput in) throws IOException
+        {
+            final int[] value = new int[DataInputOutputUtil.readINT(in)];
+
+            int previous = 0;
+            for (int i = 0; i < value.length; i++)
+            {
+                previous += DataInputOutputUtil.readINT(in);
+                value[i] = previous;
+            }
+            return value;
+        }
+    };
+
+    private final FileBasedIndex.InputFilter inputFilter = new FileBasedIndex.InputFilter()
+    {
+        public boolean acceptInput(@NotNull final VirtualFile file)
+        {
+            return ClosureDeclarations.isJavaScriptFile(file);
+        }
+    };
+
+    @NotNull
+    public ID<String, int[]> getName()
+    {
+        return NAME;
+    }
+
+    @NotNull
+    public DataIndexer<String, int[], FileContent> getIndexer()
+    {
+        return indexer;
+    }
+
+    @NotNull
+    public KeyDescriptor<String> getKeyDescriptor()
+    {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    public DataExternalizer<int[]> getValueExternalizer()
+    {
+        return OFFSETS_EXTERNALIZER;
+    }
+
+    @NotNull
+    public FileBasedIndex.InputFilter getInputFilter()
+    {
+        return inputFilter;
+    }
+
+    public boolean dependsOnFileContent()
+    {
+        return true;
+    }
+
+    public int getVersion()
+    {
+        return 1;
+    }
+}
@@ -0,0 +1,500 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.components.ProjectComponent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.Alarm;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Keeps the configured deps.js file in sync with the goog.provide and goog.require statements of the project.
+ * The full set of goog.addDependency lines is built once from the indices, afterwards only the lines of saved,
+ * created or deleted files are recomputed. A renamed, moved or deleted file or directory drops the lines under
+ * its old path before the event and the files under its new path are rescanned after it. Changes are collected
+ * for a short while and the whole file is then written with one buffered write.
+ */
+public class DepsFileUpdater implements ProjectComponent
+{
+    private static final Logger LOG = Logger.getInstance(DepsFileUpdater.class);
+
+    /**
+     * Delay in milliseconds used to coalesce bursts of saves into one write
+     */
+    private static final int UPDATE_DELAY = 500;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final Project project;
+    private final Alarm alarm;
+
+    /**
+     * goog.addDependency line per file path relative to the closure base directory, sorted so the output is stable
+     */
+    private final SortedMap<String, String> lines = new TreeMap<String, String>();
+
+    /**
+     * Guarded by the monitor of changedFiles, filled by the file system listener inside write actions. Files and
+     * directories to rescan, and the old paths of renamed, moved or deleted files and directories.
+     */
+    private final Set<VirtualFile> changedFiles = new HashSet<VirtualFile>();
+    private final Set<String> removedPaths = new HashSet<String>();
+    private boolean built;
+
+    public DepsFileUpdater(@NotNull final Project project)
+    {
+        this.project = project;
+        this.alarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, project);
+    }
+
+    public static DepsFileUpdater getInstance(@NotNull final Project project)
+    {
+        return project.getComponent(DepsFileUpdater.class);
+    }
+
+    @NotNull
+    public String getComponentName()
+    {
+        return "ClosureDepsFileUpdater";
+    }
+
+    public void initComponent()
+    {
+    }
+
+    public void disposeComponent()
+    {
+    }
+
+    public void projectOpened()
+    {
+        project.getMessageBus().connect(project).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener()
+        {
+            public void before(@NotNull final List<? extends VFileEvent> events)
+            {
+                fileSystemChanging(events);
+            }
+
+            public void after(@NotNull final List<? extends VFileEvent> events)
+            {
+                fileSystemChanged(events);
+            }
+        });
+
+        if (getDepsFile() != null)
+        {
+            schedule();
+        }
+    }
+
+    public void projectClosed()
+    {
+        alarm.cancelAllRequests();
+    }
+
+    /**
+     * Drops all cached lines and regenerates the deps file, used when the settings change.
+     */
+    public void rebuild()
+    {
+        synchronized (this)
+        {
+            built = false;
+            lines.clear();
+        }
+        schedule();
+    }
+
+    /**
+     * Records the old paths of files and directories about to be renamed, moved or deleted, they are no longer
+     * known after the event.
+     */
+    private void fileSystemChanging(final List<? extends VFileEvent> events)
+    {
+        if (getDepsFile() == null)
+        {
+            return;
+        }
+
+        boolean changed = false;
+
+        synchronized (changedFiles)
+        {
+            for (VFileEvent event : events)
+            {
+                final VirtualFile file = event.getFile();
+
+                if (file != null && isRelevant(file) && (event instanceof VFileDeleteEvent || event instanceof VFileMoveEvent
+                        || isRename(event)))
+                {
+                    removedPaths.add(file.getPath());
+                    changed = true;
+                }
+            }
+        }
+
+        if (changed)
+        {
+            schedule();
+        }
+    }
+
+    private void fileSystemChanged(final List<? extends VFileEvent> events)
+    {
+        final File depsFile = getDepsFile();
+
+        if (depsFile == null)
+        {
+            return;
+        }
+
+        boolean changed = false;
+
+        synchronized (changedFiles)
+        {
+            for (VFileEvent event : events)
+            {
+                if (event instanceof VFileDeleteEvent)
+                {
+                    continue;
+                }
+
+                final VirtualFile file = event instanceof VFileCopyEvent ? ((VFileCopyEvent) event).findCreatedFile() : event.getFile();
+
+                if (file != null && isRelevant(file) && !FileUtil.pathsEqual(file.getPath(), depsFile.getPath()))
+                {
+                    changedFiles.add(file);
+                    changed = true;
+                }
+            }
+        }
+
+        if (changed)
+        {
+            schedule();
+        }
+    }
+
+    /**
+     * @return true for directories and javascript files of this project, the application wide file system events
+     * also report the files of other open projects
+     */
+    private boolean isRelevant(final VirtualFile file)
+    {
+        return (file.isDirectory() || ClosureDeclarations.isJavaScriptFile(file))
+                && GlobalSearchScope.allScope(project).contains(file);
+    }
+
+    private static boolean isRename(final VFileEvent event)
+    {
+        return event instanceof VFilePropertyChangeEvent
+                && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName());
+    }
+
+    private void schedule()
+    {
+        if (!project.isDisposed())
+        {
+            alarm.cancelAllRequests();
+            alarm.addRequest(new Runnable()
+            {
+                public void run()
+                {
+                    update();
+                }
+            }, UPDATE_DELAY);
+        }
+    }
+
+    private synchronized void update()
+    {
+        final File depsFile = getDepsFile();
+
+        if (depsFile == null || project.isDisposed())
+        {
+            return;
+        }
+
+        if (DumbService.isDumb(project))
+        {
+            DumbService.getInstance(project).runWhenSmart(new Runnable()
+            {
+                public void run()
+                {
+                    schedule();
+                }
+            });
+            return;
+        }
+
+        final File baseDir = getBaseDir(depsFile);
+        final List<VirtualFile> files;
+        final List<String> removed;
+
+        synchronized (changedFiles)
+        {
+            files = new ArrayList<VirtualFile>(changedFiles);
+            removed = new ArrayList<String>(removedPaths);
+            changedFiles.clear();
+            removedPaths.clear();
+        }
+
+        boolean modified = false;
+
+        if (!built)
+        {
+            build(baseDir, depsFile);
+            built = true;
+            modified = true;
+        }
+        else
+        {
+            for (String path : removed)
+            {
+                modified |= removeLines(getRelativePath(baseDir, path));
+            }
+
+            for (VirtualFile file : files)
+            {
+                modified |= updateTree(baseDir, depsFile, file);
+            }
+        }
+
+        if (modified)
+        {
+            write(depsFile);
+        }
+    }
+
+    private void build(final File baseDir, final File depsFile)
+    {
+        final Map<VirtualFile, List<String>> provides = ClosureCallIndex.getNamespacesByFile(project, ClosureNamespaceIndex.NAME);
+        final Map<VirtualFile, List<String>> requires = ClosureCallIndex.getNamespacesByFile(project, ClosureRequireIndex.NAME);
+
+        for (Map.Entry<VirtualFile, List<String>> entry : provides.entrySet())
+        {
+            final VirtualFile file = entry.getKey();
+
+            if (!FileUtil.pathsEqual(file.getPath(), depsFile.getPath()))
+            {
+                final String path = getRelativePath(baseDir, file.getPath());
+                final List<String> required = requires.get(file);
+                lines.put(path, createLine(path, entry.getValue(), required != null ? required : Collections.<String>emptyList()));
+            }
+        }
+    }
+
+    /**
+     * Removes the line of a file, or the lines of all files below a directory.
+     *
+     * @param path relative path of the file or directory
+     * @return true if a line was removed
+     */
+    private boolean removeLines(final String path)
+    {
+        boolean modified = lines.remove(path) != null;
+
+        // '0' follows '/', so the sub map holds exactly the paths below the directory
+        final SortedMap<String, String> children = lines.subMap(path + '/', path + '0');
+
+        if (!children.isEmpty())
+        {
+            children.clear();
+            modified = true;
+        }
+        return modified;
+    }
+
+    /**
+     * Recomputes the line of a file, or the lines of all javascript files below a directory.
+     *
+     * @return true if a line changed
+     */
+    private boolean updateTree(final File baseDir, final File depsFile, final VirtualFile root)
+    {
+        if (!root.isDirectory())
+        {
+            return updateFile(baseDir, root);
+        }
+
+        final boolean[] modified = new boolean[1];
+        final GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+
+        VfsUtilCore.visitChildrenRecursively(root, new VirtualFileVisitor()
+        {
+            @Override
+            public boolean visitFile(@NotNull final VirtualFile file)
+            {
+                // excluded directories are not indexed either, so the initial build never lists their files
+                if (!scope.contains(file))
+                {
+                    return false;
+                }
+
+                if (!file.isDirectory() && ClosureDeclarations.isJavaScriptFile(file)
+                        && !FileUtil.pathsEqual(file.getPath(), depsFile.getPath()))
+                {
+                    modified[0] |= updateFile(baseDir, file);
+                }
+                return true;
+            }
+        });
+        return modified[0];
+    }
+
+    /**
+     * @return true if the line of the file changed
+     */
+    private boolean updateFile(final File baseDir, final VirtualFile file)
+    {
+        final String path = getRelativePath(baseDir, file.getPath());
+
+        if (!file.isValid())
+        {
+            return lines.remove(path) != null;
+        }
+
+        final CharSequence text = ClosureDeclarations.loadText(file);
+        final List<String> provides = ClosureDeclarations.findProvides(text);
+
+        if (provides.isEmpty())
+        {
+            return lines.remove(path) != null;
+        }
+
+        final String line = createLine(path, provides, ClosureDeclarations.findRequires(text));
+        return !line.equals(lines.put(path, line));
+    }
+
+    private void write(final File depsFile)
+    {
+        Writer writer = null;
+
+        try
+        {
+            FileUtil.createParentDirs(depsFile);
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(depsFile), CHARSET), 64 * 1024);
+            writer.write("// This file was autogenerated by the Google Closure Require Statement Checker plugin.\n");
+            writer.write("// Please do not edit.\n");
+
+            for (String line : lines.values())
+            {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Could not write " + depsFile, e);
+        }
+        finally
+        {
+            if (writer != null)
+            {
+                try
+                {
+                    writer.close();
+                }
+                catch (IOException e)
+                {
+                    LOG.warn("Could not close " + depsFile, e);
+                }
+            }
+        }
+
+        final VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByIoFile(depsFile);
+        if (virtualFile != null)
+        {
+            virtualFile.refresh(true, false);
+        }
+        else
+        {
+            LocalFileSystem.getInstance().refreshAndFindFileByIoFile(depsFile);
+        }
+    }
+
+    @Nullable
+    private File getDepsFile()
+    {
+        final String path = ClosureProjectSettings.getInstance(project).depsFile;
+        return path == null || path.length() == 0 ? null : new File(FileUtil.toSystemDependentName(path));
+    }
+
+    private File getBaseDir(final File depsFile)
+    {
+        final String path = ClosureProjectSettings.getInstance(project).closureBaseDir;
+        return path == null || path.length() == 0 ? depsFile.getParentFile() : new File(FileUtil.toSystemDependentName(path));
+    }
+
+    private static String getRelativePath(final File baseDir, final String path)
+    {
+        final String relative = FileUtil.getRelativePath(baseDir, new File(path));
+        return FileUtil.toSystemIndependentName(relative != null ? relative : path);
+    }
+
+    private static String createLine(final String path, final Collection<String> provides, final Collection<String> requires)
+    {
+        final StringBuilder line = new StringBuilder(64 + path.length());
+        line.append("goog.addDependency('").append(path).append("', ");
+        appendArray(line, provides);
+        line.append(", ");
+        appendArray(line, requires);
+        line.append(");");
+        return line.toString();
+    }
+
+    private static void appendArray(final StringBuilder builder, final Collection<String> namespaces)
+    {
+        final List<String> sorted = new ArrayList<String>(new HashSet<String>(namespaces));
+        Collections.sort(sorted);
+
+        builder.append('[');
+        for (int i = 0; i < sorted.size(); i++)
+        {
+            if (i > 0)
+            {
+                builder.append(", ");
+            }
+            builder.append('\'').append(sorted.get(i)).append('\'');
+        }
+        builder.append(']');
+    }
+}
@@ -0,0 +1,105 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.notification.NotificationGroup;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Writes the collected {@link ClosureInspectionMetrics} to a CSV file, totals first and then every file ranked
+ * by wall time.
+ */
+public class ExportInspectionMetricsAction extends AnAction
+{
+    private static final String TITLE = "Export Closure Inspection Metrics";
+
+    /**
+     * Creating the group registers it, so it can be configured in the notification settings
+     */
+    private static final NotificationGroup NOTIFICATIONS = NotificationGroup.balloonGroup("Closure");
+
+    @Override
+    public void actionPerformed(@NotNull final AnActionEvent e)
+    {
+        final Project project = e.getProject();
+        final VirtualFileWrapper target = FileChooserFactory.getInstance()
+                .createSaveFileDialog(new FileSaverDescriptor(TITLE, "Slowest files first", "csv"), project)
+                .save(null, "closure-inspection-metrics.csv");
+
+        if (target == null)
+        {
+            return;
+        }
+
+        final ClosureInspectionMetrics metrics = ClosureInspectionMetrics.getInstance();
+        final ClosureInspectionMetrics.FileMetrics totals = metrics.getTotals();
+        final List<ClosureInspectionMetrics.FileMetrics> files = metrics.getSlowestFiles();
+
+        try
+        {
+            write(target.getFile(), totals, files);
+        }
+        catch (IOException ex)
+        {
+            Messages.showErrorDialog(project, "Could not write " + target.getFile() + ": " + ex.getMessage(), TITLE);
+            return;
+        }
+
+        NOTIFICATIONS.createNotification(TITLE, files.size() + " files, " + totals.nanos / 1000000 + " ms inspection time, "
+                + totals.problems + " problems written to " + target.getFile(), NotificationType.INFORMATION, null).notify(project);
+    }
+
+    private static void write(final File file, final ClosureInspectionMetrics.FileMetrics totals,
+                              final List<ClosureInspectionMetrics.FileMetrics> files) throws IOException
+    {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+
+        try
+        {
+            writer.write("file,wall ms,collect ms,psi nodes,references,classifier calls,problems\n");
+            writeRow(writer, totals);
+
+            for (ClosureInspectionMetrics.FileMetrics metrics : files)
+            {
+                writeRow(writer, metrics);
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static void writeRow(final Writer writer, final ClosureInspectionMetrics.FileMetrics metrics) throws IOException
+    {
+        writer.write('"' + metrics.path.replace("\"", "\"\"") + '"');
+        writer.write("," + metrics.nanos / 1000000.0);
+        writer.write("," + metrics.collectNanos / 1000000.0);
+        writer.write("," + metrics.nodesVisited);
+        writer.write("," + metrics.referencesClassified);
+        writer.write("," + metrics.classifierCalls);
+        writer.write("," + metrics.problems);
+        writer.write('\n');
+    }
+}
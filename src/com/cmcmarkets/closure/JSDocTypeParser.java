@@ -0,0 +1,169 @@
+package com.cmcmarkets.closure;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Extracts the type names of a closure JSDoc type expression, for example <code>my.ns.Foo</code> and
+ * <code>my.ns.Bar</code> from <code>{Object&lt;string, my.ns.Foo&gt;|function(this:my.ns.Bar, ...*)}</code>.
+ * Unions, nullability and optional markers, generics in both <code>&lt;T&gt;</code> and <code>.&lt;T&gt;</code>
+ * form, function signatures and record types are understood; record field names and the <code>this</code> and
+ * <code>new</code> labels of function types are not reported.
+ * <p/>
+ * The same type expressions occur over and over in a code base, so results are kept in a bounded cache shared
+ * by all files and keyed by the expression text.
+ */
+final class JSDocTypeParser
+{
+    /**
+     * Number of distinct type expressions kept in the cache
+     */
+    private static final int CACHE_SIZE = 8192;
+
+    private static final Map<String, List<TypeName>> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, List<TypeName>>(CACHE_SIZE / 4, 0.75f, true)
+            {
+                protected boolean removeEldestEntry(final Map.Entry<String, List<TypeName>> eldest)
+                {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private JSDocTypeParser()
+    {
+    }
+
+    /**
+     * @param text type expression, with or without the enclosing braces
+     * @return type names in source order, the returned list must not be modified
+     */
+    @NotNull
+    static List<TypeName> parse(@NotNull final String text)
+    {
+        List<TypeName> names = CACHE.get(text);
+
+        if (names == null)
+        {
+            names = scan(text);
+            CACHE.put(text, names);
+        }
+        return names;
+    }
+
+    /**
+     * Parses without the cache.
+     */
+    static List<TypeName> scan(@NotNull final String text)
+    {
+        List<TypeName> names = null;
+        final int length = text.length();
+        int i = 0;
+
+        while (i < length)
+        {
+            if (!isNameStart(text.charAt(i)))
+            {
+                i++;
+                continue;
+            }
+
+            final int start = i;
+            i = scanName(text, i);
+            final int end = i;
+            final int next = skipWhitespace(text, i);
+
+            // record field names and the this: / new: labels of function types
+            if (next < length && text.charAt(next) == ':')
+            {
+                continue;
+            }
+
+            if (next < length && text.charAt(next) == '(' && text.regionMatches(start, "function", 0, end - start)
+                    && end - start == "function".length())
+            {
+                continue;
+            }
+
+            if (names == null)
+            {
+                names = new ArrayList<TypeName>(2);
+            }
+            names.add(new TypeName(text.substring(start, end), start));
+        }
+
+        return names == null ? Collections.<TypeName>emptyList() : Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Scans a dotted name, stopping before a dot that starts an old style <code>.&lt;T&gt;</code> generic.
+     *
+     * @return offset after the name
+     */
+    private static int scanName(final String text, int i)
+    {
+        final int length = text.length();
+
+        while (true)
+        {
+            while (i < length && isNamePart(text.charAt(i)))
+            {
+                i++;
+            }
+
+            if (i + 1 < length && text.charAt(i) == '.' && isNameStart(text.charAt(i + 1)))
+            {
+                i++;
+            }
+            else
+            {
+                return i;
+            }
+        }
+    }
+
+    private static int skipWhitespace(final String text, int i)
+    {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i)))
+        {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isNameStart(final char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+    }
+
+    private static boolean isNamePart(final char c)
+    {
+        return isNameStart(c) || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * A type name and its offset in the parsed expression
+     */
+    static final class TypeName
+    {
+        final String name;
+        final int offset;
+
+        TypeName(@NotNull final String name, final int offset)
+        {
+            this.name = name;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ */
+class MultipleRequireStatementFix implements LocalQuickFix
+{
+    @NotNull
+    public String getName()
+    {
+        return "Fix all goog.require statements";
+    }
+
+
+    public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor)
+    {
+        final PsiElement element = descriptor.getPsiElement();
+
+        if (element == null)
+        {
+            return;
+        }
+
+        final ValidationSession session = ValidationSession.getSession(element.getContainingFile());
+        final Set<String> namespaces = new LinkedHashSet<String>();
+
+        for (String namespace : session.errorRanges.values())
+        {
+            if (ClosureNamespaceIndex.isProvided(project, namespace))
+            {
+                namespaces.add(namespace);
+            }
+        }
+
+        RequireBlock.rewrite(element.getContainingFile(), session, namespaces);
+    }
+
+    @NotNull
+    public String getFamilyName()
+    {
+        return getName();
+    }
+}
@@ -0,0 +1,115 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.codeInsight.completion.CompletionContributor;
+import com.intellij.codeInsight.completion.CompletionParameters;
+import com.intellij.codeInsight.completion.CompletionProvider;
+import com.intellij.codeInsight.completion.CompletionResultSet;
+import com.intellij.codeInsight.completion.CompletionType;
+import com.intellij.codeInsight.completion.InsertHandler;
+import com.intellij.codeInsight.completion.InsertionContext;
+import com.intellij.codeInsight.lookup.LookupElement;
+import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.lang.javascript.JavascriptLanguage;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.patterns.PlatformPatterns;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.ProcessingContext;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Completes dotted closure namespaces in code and JSDoc from the provided namespaces of the project. Accepting
+ * a namespace also adds its goog.require statement to the sorted require block of the file.
+ */
+public class NamespaceCompletionContributor extends CompletionContributor
+{
+    /**
+     * Most namespaces offered for one prefix, completion is restarted when the prefix changes so typing further
+     * narrows the list down
+     */
+    private static final int MAX_ITEMS = 500;
+
+    private static final InsertHandler<LookupElement> ADD_REQUIRE_HANDLER = new InsertHandler<LookupElement>()
+    {
+        public void handleInsert(@NotNull final InsertionContext context, @NotNull final LookupElement item)
+        {
+            final String namespace = item.getLookupString();
+
+            context.commitDocument();
+            final PsiFile file = context.getFile();
+            // the file was just modified, a validation session would walk the whole file again on the EDT
+            final ValidationSession session = ValidationSession.getDeclarations(file);
+
+            // nothing to add when completing inside a goog.require or goog.provide, or the namespace is known already
+            if (!session.requireSet.contains(namespace) && !session.provideSet.contains(namespace))
+            {
+                RequireBlock.rewrite(file, session, Collections.singleton(namespace));
+            }
+        }
+    };
+
+    public NamespaceCompletionContributor()
+    {
+        extend(CompletionType.BASIC, PlatformPatterns.psiElement().withLanguage(JavascriptLanguage.INSTANCE),
+                new CompletionProvider<CompletionParameters>()
+                {
+                    protected void addCompletions(@NotNull final CompletionParameters parameters,
+                                                  final ProcessingContext context, @NotNull final CompletionResultSet result)
+                    {
+                        if (DumbService.isDumb(parameters.getPosition().getProject()))
+                        {
+                            return;
+                        }
+
+                        final String prefix = getDottedPrefix(parameters.getEditor().getDocument().getCharsSequence(),
+                                parameters.getOffset());
+
+                        if (prefix.length() == 0)
+                        {
+                            return;
+                        }
+
+                        final ProvidedNamespaces namespaces = ProvidedNamespaces.getInstance(parameters.getPosition().getProject());
+                        final CompletionResultSet dottedResult = result.withPrefixMatcher(prefix);
+                        final int start = namespaces.start(prefix);
+                        final int end = Math.min(namespaces.end(prefix), start + MAX_ITEMS);
+
+                        for (int i = start; i < end; i++)
+                        {
+                            dottedResult.addElement(LookupElementBuilder.create(namespaces.get(i))
+                                    .withTypeText("goog.provide", true)
+                                    .withInsertHandler(ADD_REQUIRE_HANDLER));
+                        }
+
+                        result.restartCompletionOnAnyPrefixChange();
+                    }
+                });
+    }
+
+    /**
+     * @return the dotted name typed before the offset, for example <code>my.ns.Fo</code>
+     */
+    private static String getDottedPrefix(final CharSequence text, final int offset)
+    {
+        int start = offset;
+
+        while (start > 0)
+        {
+            final char c = text.charAt(start - 1);
+            if (!Character.isJavaIdentifierPart(c) && c != '.')
+            {
+                break;
+            }
+            start--;
+        }
+        return text.subSequence(start, offset).toString();
+    }
+}
@@ -0,0 +1,239 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ContentIterator;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.Processor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Adds missing, removes unused and sorts the goog.require statements of every javascript file in the selected
+ * directories, the current module or the whole project. Files are analysed concurrently in read actions that give
+ * way to write actions, with the file filters of the inspection, and the resulting edits are written in batches,
+ * each batch in one write command.
+ */
+public class OptimizeRequireStatementsAction extends AnAction
+{
+    private static final String COMMAND_NAME = "Optimize goog.require Statements";
+
+    /**
+     * Number of files written per write command
+     */
+    private static final int WRITE_BATCH_SIZE = 50;
+
+    @Override
+    public void update(@NotNull final AnActionEvent e)
+    {
+        e.getPresentation().setEnabledAndVisible(e.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull final AnActionEvent e)
+    {
+        final Project project = e.getProject();
+
+        if (project == null)
+        {
+            return;
+        }
+
+        final VirtualFile[] selection = e.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
+        final Module module = e.getData(LangDataKeys.MODULE_CONTEXT);
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, COMMAND_NAME, true)
+        {
+            public void run(@NotNull final ProgressIndicator indicator)
+            {
+                indicator.setText("Collecting javascript files");
+                final List<VirtualFile> files = collectFiles(project, selection, module, indicator);
+
+                indicator.setText("Analysing goog.require statements");
+                final List<FileEdit> edits = analyse(project, files, indicator);
+
+                indicator.setText("Writing goog.require statements");
+                write(project, edits, indicator);
+            }
+        });
+    }
+
+    private static List<VirtualFile> collectFiles(final Project project, final VirtualFile[] selection, final Module module,
+                                                  final ProgressIndicator indicator)
+    {
+        final Set<VirtualFile> files = new HashSet<VirtualFile>();
+        final ProjectFileIndex fileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+        final ContentIterator collector = new ContentIterator()
+        {
+            public boolean processFile(final VirtualFile file)
+            {
+                if (!file.isDirectory() && "js".equals(file.getExtension()))
+                {
+                    files.add(file);
+                }
+                return true;
+            }
+        };
+
+        ShowMissingRequiresAction.runReadActionYielding(new Runnable()
+        {
+            public void run()
+            {
+                files.clear();
+
+                if (selection != null && selection.length > 0)
+                {
+                    for (VirtualFile root : selection)
+                    {
+                        fileIndex.iterateContentUnderDirectory(root, collector);
+                    }
+                }
+                else if (module != null)
+                {
+                    ModuleRootManager.getInstance(module).getFileIndex().iterateContent(collector);
+                }
+                else
+                {
+                    fileIndex.iterateContent(collector);
+                }
+            }
+        }, indicator);
+
+        return new ArrayList<VirtualFile>(files);
+    }
+
+    private static List<FileEdit> analyse(final Project project, final List<VirtualFile> files, final ProgressIndicator indicator)
+    {
+        final List<FileEdit> edits = Collections.synchronizedList(new ArrayList<FileEdit>());
+        final PsiManager psiManager = PsiManager.getInstance(project);
+
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(files, indicator, new Processor<VirtualFile>()
+        {
+            public boolean process(final VirtualFile virtualFile)
+            {
+                final FileEdit[] edit = new FileEdit[1];
+
+                // a write action cancels the analysis of the file, which is then repeated
+                ShowMissingRequiresAction.runReadActionYielding(new Runnable()
+                {
+                    public void run()
+                    {
+                        edit[0] = null;
+
+                        final PsiFile file = virtualFile.isValid() ? psiManager.findFile(virtualFile) : null;
+
+                        if (file != null)
+                        {
+                            edit[0] = computeEdit(project, file);
+                        }
+                    }
+                }, indicator);
+
+                if (edit[0] != null)
+                {
+                    edits.add(edit[0]);
+                }
+                return true;
+            }
+        });
+
+        return new ArrayList<FileEdit>(edits);
+    }
+
+    /**
+     * @return the edit of the require block, null if nothing changes or the inspection options skip the file
+     */
+    private static FileEdit computeEdit(final Project project, final PsiFile file)
+    {
+        final ValidationSession session = ValidateRequireStatementsInspection.getOptions(file).getSession(file);
+
+        if (session == null)
+        {
+            return null;
+        }
+
+        final Set<String> missing = new HashSet<String>();
+
+        for (String namespace : session.errorRanges.values())
+        {
+            if (ClosureNamespaceIndex.isProvided(project, namespace))
+            {
+                missing.add(namespace);
+            }
+        }
+
+        final RequireBlock.Edit edit = RequireBlock.compute(file, session, missing, session.unusedRequires);
+        return edit == null ? null : new FileEdit(file, edit);
+    }
+
+    private static void write(final Project project, final List<FileEdit> edits, final ProgressIndicator indicator)
+    {
+        for (int batchStart = 0; batchStart < edits.size(); batchStart += WRITE_BATCH_SIZE)
+        {
+            indicator.checkCanceled();
+            indicator.setFraction((double) batchStart / edits.size());
+
+            final List<FileEdit> batch = edits.subList(batchStart, Math.min(batchStart + WRITE_BATCH_SIZE, edits.size()));
+
+            ApplicationManager.getApplication().invokeAndWait(new Runnable()
+            {
+                public void run()
+                {
+                    WriteCommandAction.runWriteCommandAction(project, COMMAND_NAME, null, new Runnable()
+                    {
+                        public void run()
+                        {
+                            for (FileEdit edit : batch)
+                            {
+                                if (edit.file.isValid())
+                                {
+                                    edit.edit.apply(edit.file);
+                                }
+                            }
+                        }
+                    });
+                }
+            }, ModalityState.defaultModalityState());
+        }
+    }
+
+    private static final class FileEdit
+    {
+        final PsiFile file;
+        final RequireBlock.Edit edit;
+
+        FileEdit(final PsiFile file, final RequireBlock.Edit edit)
+        {
+            this.file = file;
+            this.edit = edit;
+        }
+    }
+}
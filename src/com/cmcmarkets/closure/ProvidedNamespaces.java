@@ -0,0 +1,125 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.util.indexing.FileBasedIndex;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * All namespaces provided in the project in one sorted array. The namespaces starting with a prefix form one
+ * contiguous run of the array, found with two binary searches, so a lookup costs O(log n) for any prefix and
+ * the structure takes no more memory than the strings themselves.
+ * <p/>
+ * Only namespaces still provided by a file of the project are kept, index keys may be stale. The array is rebuilt
+ * from {@link ClosureNamespaceIndex} only when a goog.provide may have changed, as tracked
+ * by {@link ClosureDependencyGraph#getProvideModificationTracker()}, or the file system structure changed.
+ */
+final class ProvidedNamespaces
+{
+    private static final Key<CachedValue<ProvidedNamespaces>> NAMESPACES_KEY = Key.create("closure.provided.namespaces");
+
+    private final String[] namespaces;
+
+    private ProvidedNamespaces(final String[] namespaces)
+    {
+        this.namespaces = namespaces;
+    }
+
+    /**
+     * Must not be called in dumb mode.
+     *
+     * @param project current project
+     * @return provided namespaces of the project
+     */
+    @NotNull
+    static ProvidedNamespaces getInstance(@NotNull final Project project)
+    {
+        return CachedValuesManager.getManager(project).getCachedValue(project, NAMESPACES_KEY, new CachedValueProvider<ProvidedNamespaces>()
+        {
+            public Result<ProvidedNamespaces> compute()
+            {
+                final FileBasedIndex index = FileBasedIndex.getInstance();
+                final GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+                final List<String> keys = new ArrayList<String>();
+
+                for (String namespace : index.getAllKeys(ClosureNamespaceIndex.NAME, project))
+                {
+                    // keys may outlive the last file providing them, or come from files of another project
+                    if (!index.getContainingFiles(ClosureNamespaceIndex.NAME, namespace, scope).isEmpty())
+                    {
+                        keys.add(namespace);
+                    }
+                }
+
+                final String[] namespaces = keys.toArray(new String[keys.size()]);
+                Arrays.sort(namespaces);
+
+                return Result.create(new ProvidedNamespaces(namespaces),
+                        ClosureDependencyGraph.getInstance(project).getProvideModificationTracker(),
+                        VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS);
+            }
+        }, false);
+    }
+
+    /**
+     * @param prefix namespace prefix
+     * @return index of the first namespace starting with the prefix, or where it would be
+     */
+    int start(@NotNull final String prefix)
+    {
+        return lowerBound(prefix);
+    }
+
+    /**
+     * @param prefix namespace prefix
+     * @return index after the last namespace starting with the prefix
+     */
+    int end(@NotNull final String prefix)
+    {
+        // every namespace starting with the prefix sorts before the prefix followed by the highest character
+        return lowerBound(prefix + Character.MAX_VALUE);
+    }
+
+    @NotNull
+    String get(final int index)
+    {
+        return namespaces[index];
+    }
+
+    private int lowerBound(final String key)
+    {
+        int low = 0;
+        int high = namespaces.length;
+
+        while (low < high)
+        {
+            final int middle = (low + high) >>> 1;
+
+            if (namespaces[middle].compareTo(key) < 0)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,112 @@
+package com.cmcmarkets.closure;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Character level classification of dotted references. All methods work on a range of the given string so
+ * no substrings are created. The rules are the ones previously expressed by the patterns
+ * <code>[A-Z0-9_]+</code> for constants and <code>[A-Z]{1}[a-zA-Z1-9]+</code> for class names.
+ */
+final class ReferenceClassifier
+{
+    private static final String PROTOTYPE = ".prototype";
+
+    private ReferenceClassifier()
+    {
+    }
+
+    /**
+     * @param text text containing the segment
+     * @param from segment start, inclusive
+     * @param to   segment end, exclusive
+     * @return true if the segment is a non empty run of upper case letters, digits and underscores
+     */
+    static boolean isConstant(@NotNull final String text, final int from, final int to)
+    {
+        if (from >= to)
+        {
+            return false;
+        }
+
+        for (int i = from; i < to; i++)
+        {
+            final char c = text.charAt(i);
+            if (!((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_'))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param text text containing the segment
+     * @param from segment start, inclusive
+     * @param to   segment end, exclusive
+     * @return true if the segment starts with an upper case letter followed by at least one letter or digit 1-9
+     */
+    static boolean isClass(@NotNull final String text, final int from, final int to)
+    {
+        if (to - from < 2)
+        {
+            return false;
+        }
+
+        final char first = text.charAt(from);
+        if (first < 'A' || first > 'Z')
+        {
+            return false;
+        }
+
+        for (int i = from + 1; i < to; i++)
+        {
+            final char c = text.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '1' && c <= '9')))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param reference dotted reference
+     * @return true if any of the dot separated segments is a class name
+     */
+    static boolean hasClassSegment(@NotNull final String reference)
+    {
+        int segmentStart = 0;
+        final int length = reference.length();
+
+        for (int i = 0; i <= length; i++)
+        {
+            if (i == length || reference.charAt(i) == '.')
+            {
+                if (isClass(reference, segmentStart, i))
+                {
+                    return true;
+                }
+                segmentStart = i + 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param reference dotted reference
+     * @param to        end of the range to search, exclusive
+     * @return true if <code>.prototype</code> occurs within the first <code>to</code> characters
+     */
+    static boolean containsPrototype(@NotNull final String reference, final int to)
+    {
+        final int index = reference.indexOf(PROTOTYPE);
+        return index != -1 && index + PROTOTYPE.length() <= to;
+    }
+}
@@ -0,0 +1,73 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.text.CharArrayUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ */
+class RemoveUnusedRequireFix implements LocalQuickFix
+{
+    @NotNull
+    public String getName()
+    {
+        return "Remove unused goog.require statement";
+    }
+
+
+    public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor)
+    {
+        final PsiElement element = descriptor.getPsiElement();
+
+        if (element == null || !element.isValid())
+        {
+            return;
+        }
+
+        final PsiFile file = element.getContainingFile();
+        final PsiDocumentManager documentManager = PsiDocumentManager.getInstance(project);
+        final Document document = file != null ? documentManager.getDocument(file) : null;
+
+        if (document == null)
+        {
+            element.delete();
+            return;
+        }
+
+        // the statement goes together with the rest of its line, so no blank line is left behind
+        final CharSequence text = document.getCharsSequence();
+        final int start = element.getTextRange().getStartOffset();
+        int end = CharArrayUtil.shiftForward(text, element.getTextRange().getEndOffset(), " \t");
+
+        if (end < text.length() && text.charAt(end) == '\r')
+        {
+            end++;
+        }
+        if (end < text.length() && text.charAt(end) == '\n')
+        {
+            end++;
+        }
+
+        documentManager.doPostponedOperationsAndUnblockDocument(document);
+        document.deleteString(start, end);
+        documentManager.commitDocument(document);
+    }
+
+    @NotNull
+    public String getFamilyName()
+    {
+        return getName();
+    }
+}
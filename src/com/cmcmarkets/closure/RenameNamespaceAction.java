@@ -0,0 +1,101 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.lang.javascript.psi.JSLiteralExpression;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.InputValidator;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.regex.Pattern;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Starts a {@link RenameNamespaceProcessor} for the goog.provide or goog.require argument at the caret.
+ */
+public class RenameNamespaceAction extends AnAction
+{
+    private static final String TITLE = "Rename Closure Namespace";
+    private static final Pattern NAMESPACE_PATTERN = Pattern.compile("[A-Za-z_$][\\w$]*(\\.[A-Za-z_$][\\w$]*)*");
+
+    @Override
+    public void update(@NotNull final AnActionEvent e)
+    {
+        e.getPresentation().setEnabledAndVisible(findNamespaceLiteral(e) != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull final AnActionEvent e)
+    {
+        final Project project = e.getProject();
+        final JSLiteralExpression literal = findNamespaceLiteral(e);
+
+        if (project == null || literal == null)
+        {
+            return;
+        }
+
+        if (DumbService.isDumb(project))
+        {
+            DumbService.getInstance(project).showDumbModeNotification(TITLE + " is available once indexing has finished");
+            return;
+        }
+
+        final String text = literal.getText();
+        final String oldNamespace = text.substring(1, text.length() - 1);
+        final String newNamespace = Messages.showInputDialog(project, "Rename namespace " + oldNamespace
+                        + " and the namespaces below it to:", TITLE, null, oldNamespace, new InputValidator()
+                {
+                    public boolean checkInput(final String inputString)
+                    {
+                        return NAMESPACE_PATTERN.matcher(inputString).matches() && !inputString.equals(oldNamespace);
+                    }
+
+                    public boolean canClose(final String inputString)
+                    {
+                        return checkInput(inputString);
+                    }
+                });
+
+        if (newNamespace == null)
+        {
+            return;
+        }
+
+        final RenameNamespaceProcessor processor = new RenameNamespaceProcessor(project, literal, oldNamespace, newNamespace);
+        processor.setPreviewUsages(true);
+        processor.run();
+    }
+
+    @Nullable
+    private static JSLiteralExpression findNamespaceLiteral(final AnActionEvent e)
+    {
+        final Editor editor = e.getData(CommonDataKeys.EDITOR);
+        final PsiFile file = e.getData(CommonDataKeys.PSI_FILE);
+
+        if (editor == null || file == null)
+        {
+            return null;
+        }
+
+        final PsiElement element = file.findElementAt(editor.getCaretModel().getOffset());
+        final JSLiteralExpression literal = PsiTreeUtil.getParentOfType(element, JSLiteralExpression.class, false);
+
+        return literal != null && literal.getTextLength() > 2 && RenameNamespaceProcessor.isClosureCallArgument(literal)
+                ? literal : null;
+    }
+}
@@ -0,0 +1,295 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.lang.javascript.psi.JSCallExpression;
+import com.intellij.lang.javascript.psi.JSLiteralExpression;
+import com.intellij.lang.javascript.psi.JSReferenceExpression;
+import com.intellij.lang.javascript.psi.jsdoc.JSDocTagValue;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Segment;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
+import com.intellij.refactoring.BaseRefactoringProcessor;
+import com.intellij.usageView.UsageInfo;
+import com.intellij.usageView.UsageViewBundle;
+import com.intellij.usageView.UsageViewDescriptor;
+import com.intellij.util.containers.MultiMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Renames a closure namespace and every namespace below it. Only the files providing or requiring one of the
+ * affected namespaces are read, found through the namespace indices; a file referencing a namespace without
+ * providing or requiring it is already broken. In those files the goog.provide and goog.require arguments, the
+ * dotted references and the JSDoc type names of the namespace are rewritten.
+ */
+class RenameNamespaceProcessor extends BaseRefactoringProcessor
+{
+    private static final String COMMAND_NAME = "Rename Closure Namespace";
+
+    private final String oldNamespace;
+    private final String newNamespace;
+    private final PsiElement declaration;
+
+    /**
+     * @param project      current project
+     * @param declaration  goog.provide or goog.require argument the rename was started from
+     * @param oldNamespace namespace to rename
+     * @param newNamespace new name
+     */
+    RenameNamespaceProcessor(@NotNull final Project project, @NotNull final PsiElement declaration,
+                             @NotNull final String oldNamespace, @NotNull final String newNamespace)
+    {
+        super(project);
+        this.declaration = declaration;
+        this.oldNamespace = oldNamespace;
+        this.newNamespace = newNamespace;
+    }
+
+    @NotNull
+    @Override
+    protected UsageViewDescriptor createUsageViewDescriptor(@NotNull final UsageInfo[] usages)
+    {
+        return new UsageViewDescriptor()
+        {
+            @NotNull
+            public PsiElement[] getElements()
+            {
+                return new PsiElement[]{declaration};
+            }
+
+            public String getProcessedElementsHeader()
+            {
+                return "Namespace to rename to " + newNamespace;
+            }
+
+            public String getCodeReferencesText(final int usagesCount, final int filesCount)
+            {
+                return "Occurrences of " + oldNamespace + " " + UsageViewBundle.getReferencesString(usagesCount, filesCount);
+            }
+
+            @Nullable
+            public String getCommentReferencesText(final int usagesCount, final int filesCount)
+            {
+                return null;
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    protected UsageInfo[] findUsages()
+    {
+        final List<UsageInfo> usages = new ArrayList<UsageInfo>();
+        final PsiManager psiManager = PsiManager.getInstance(myProject);
+
+        for (VirtualFile virtualFile : findAffectedFiles())
+        {
+            ProgressManager.checkCanceled();
+
+            final PsiFile file = psiManager.findFile(virtualFile);
+            if (file != null)
+            {
+                collectOccurrences(file, usages);
+            }
+        }
+        return usages.toArray(new UsageInfo[usages.size()]);
+    }
+
+    /**
+     * @return files providing or requiring the namespace or a namespace below it
+     */
+    private Set<VirtualFile> findAffectedFiles()
+    {
+        final Set<String> namespaces = new LinkedHashSet<String>();
+        namespaces.add(oldNamespace);
+
+        final ProvidedNamespaces provided = ProvidedNamespaces.getInstance(myProject);
+        final String childPrefix = oldNamespace + ".";
+        for (int i = provided.start(childPrefix), end = provided.end(childPrefix); i < end; i++)
+        {
+            namespaces.add(provided.get(i));
+        }
+
+        final Set<VirtualFile> files = new LinkedHashSet<VirtualFile>();
+
+        for (String namespace : namespaces)
+        {
+            files.addAll(ClosureNamespaceIndex.getProvidingFiles(myProject, namespace));
+            files.addAll(ClosureRequireIndex.getRequiringFiles(myProject, namespace));
+        }
+        return files;
+    }
+
+    private void collectOccurrences(final PsiFile file, final List<UsageInfo> usages)
+    {
+        // a local variable or parameter named like the root of the namespace shadows it in the whole file
+        if (ValidationSession.getSession(file).isLocalName(oldNamespace))
+        {
+            collectDeclarationOccurrences(file, usages);
+            return;
+        }
+
+        file.accept(new PsiRecursiveElementWalkingVisitor()
+        {
+            @Override
+            public void visitElement(final PsiElement element)
+            {
+                if (element instanceof JSReferenceExpression)
+                {
+                    // my.ns.Foo.bar contains the reference expression my.ns, which is the one to rename
+                    if (element.textMatches(oldNamespace))
+                    {
+                        usages.add(new UsageInfo(element));
+                        return;
+                    }
+                }
+                else if (element instanceof JSLiteralExpression && isClosureCallArgument(element))
+                {
+                    final String text = element.getText();
+                    if (text.length() > 2 && matchesNamespace(text.substring(1, text.length() - 1)))
+                    {
+                        usages.add(new UsageInfo(element, 1, 1 + oldNamespace.length()));
+                    }
+                    return;
+                }
+                else if (element instanceof JSDocTagValue)
+                {
+                    for (JSDocTypeParser.TypeName type : JSDocTypeParser.parse(element.getText()))
+                    {
+                        if (matchesNamespace(type.name))
+                        {
+                            usages.add(new UsageInfo(element, type.offset, type.offset + oldNamespace.length()));
+                        }
+                    }
+                    return;
+                }
+                super.visitElement(element);
+            }
+        });
+    }
+
+    /**
+     * Collects only the goog.provide and goog.require arguments, used where code references cannot be told
+     * apart from local names.
+     */
+    private void collectDeclarationOccurrences(final PsiFile file, final List<UsageInfo> usages)
+    {
+        file.accept(new PsiRecursiveElementWalkingVisitor()
+        {
+            @Override
+            public void visitElement(final PsiElement element)
+            {
+                if (element instanceof JSLiteralExpression)
+                {
+                    final String text = element.getText();
+                    if (text.length() > 2 && isClosureCallArgument(element) && matchesNamespace(text.substring(1, text.length() - 1)))
+                    {
+                        usages.add(new UsageInfo(element, 1, 1 + oldNamespace.length()));
+                    }
+                    return;
+                }
+                super.visitElement(element);
+            }
+        });
+    }
+
+    private boolean matchesNamespace(final String name)
+    {
+        return name.startsWith(oldNamespace)
+                && (name.length() == oldNamespace.length() || name.charAt(oldNamespace.length()) == '.');
+    }
+
+    /**
+     * @return true for the argument of a goog.provide or goog.require call
+     */
+    static boolean isClosureCallArgument(@NotNull final PsiElement literal)
+    {
+        final PsiElement call = literal.getParent() != null ? literal.getParent().getParent() : null;
+
+        if (!(call instanceof JSCallExpression))
+        {
+            return false;
+        }
+
+        final PsiElement method = ((JSCallExpression) call).getMethodExpression();
+        return method != null && (method.textMatches("goog.provide") || method.textMatches("goog.require"));
+    }
+
+    @Override
+    protected void performRefactoring(@NotNull final UsageInfo[] usages)
+    {
+        final MultiMap<PsiFile, TextRange> rangesByFile = new MultiMap<PsiFile, TextRange>();
+
+        for (UsageInfo usage : usages)
+        {
+            final PsiFile file = usage.getFile();
+            final Segment segment = usage.getSegment();
+
+            if (file != null && segment != null)
+            {
+                rangesByFile.putValue(file, new TextRange(segment.getStartOffset(), segment.getEndOffset()));
+            }
+        }
+
+        final PsiDocumentManager documentManager = PsiDocumentManager.getInstance(myProject);
+
+        for (Map.Entry<PsiFile, Collection<TextRange>> entry : rangesByFile.entrySet())
+        {
+            final Document document = documentManager.getDocument(entry.getKey());
+
+            if (document == null)
+            {
+                continue;
+            }
+
+            final List<TextRange> ranges = new ArrayList<TextRange>(entry.getValue());
+
+            // replace from the end so earlier offsets stay valid
+            Collections.sort(ranges, new Comparator<TextRange>()
+            {
+                public int compare(final TextRange o1, final TextRange o2)
+                {
+                    return o2.getStartOffset() - o1.getStartOffset();
+                }
+            });
+
+            documentManager.doPostponedOperationsAndUnblockDocument(document);
+
+            for (TextRange range : ranges)
+            {
+                document.replaceString(range.getStartOffset(), range.getEndOffset(), newNamespace);
+            }
+            documentManager.commitDocument(document);
+        }
+    }
+
+    @NotNull
+    @Override
+    protected String getCommandName()
+    {
+        return COMMAND_NAME + " " + oldNamespace + " to " + newNamespace;
+    }
+}
@@ -0,0 +1,350 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Computes the sorted, de-duplicated goog.require block of a file and writes it back with a single document
+ * edit. Closure library requires come first, then all other requires, each group sorted by namespace.
+ * <p/>
+ * The block is the first run of top level requires separated by nothing but whitespace and comments. Requires
+ * after other code or inside functions are left where they are, so rewriting the block never moves code.
+ */
+final class RequireBlock
+{
+    private static final Comparator<RequireLine> LINE_COMPARATOR = new Comparator<RequireLine>()
+    {
+        public int compare(final RequireLine o1, final RequireLine o2)
+        {
+            if (o1.closureLibrary != o2.closureLibrary)
+            {
+                return o1.closureLibrary ? -1 : 1;
+            }
+            return o1.namespace.compareTo(o2.namespace);
+        }
+    };
+
+    private RequireBlock()
+    {
+    }
+
+    /**
+     * Rewrites the require block of the file so it contains the existing and the added requires in order.
+     *
+     * @param file          file to modify, must be writable and called inside a write action
+     * @param session       up to date session of the file
+     * @param addNamespaces namespaces to add, duplicates of existing requires are ignored
+     */
+    static void rewrite(@NotNull final PsiFile file, @NotNull final ValidationSession session,
+                        @NotNull final Collection<String> addNamespaces)
+    {
+        final Edit edit = compute(file, session, addNamespaces, Collections.<String>emptySet());
+
+        if (edit != null)
+        {
+            edit.apply(file);
+        }
+    }
+
+    /**
+     * Computes the edit that turns the current require block into the sorted block with the given changes.
+     * Only reads the file, so it can be called from any read action.
+     *
+     * @param file             file the session belongs to
+     * @param session          up to date session of the file
+     * @param addNamespaces    namespaces to add, duplicates of existing requires are ignored
+     * @param removeNamespaces namespaces whose require statements are dropped
+     * @return the edit, or null if the block is already in its final form
+     */
+    @Nullable
+    static Edit compute(@NotNull final PsiFile file, @NotNull final ValidationSession session,
+                        @NotNull final Collection<String> addNamespaces, @NotNull final Collection<String> removeNamespaces)
+    {
+        final CharSequence text = file.getViewProvider().getContents();
+        final List<ValidationSession.NamespaceStatement> blockStatements = findBlock(session, text);
+        final Set<String> requiredElsewhere = new HashSet<String>(session.requireSet);
+        final List<RequireLine> lines = new ArrayList<RequireLine>();
+
+        for (ValidationSession.NamespaceStatement require : blockStatements)
+        {
+            requiredElsewhere.remove(require.namespace);
+
+            if (!removeNamespaces.contains(require.namespace))
+            {
+                lines.add(new RequireLine(require.namespace, require.text));
+            }
+        }
+
+        for (String namespace : addNamespaces)
+        {
+            if (!requiredElsewhere.contains(namespace))
+            {
+                lines.add(new RequireLine(namespace, createStatement(namespace)));
+            }
+        }
+
+        final String block = buildBlock(lines);
+        final int start;
+        final int end;
+        final String replacement;
+
+        if (!blockStatements.isEmpty())
+        {
+            start = blockStatements.get(0).range.getStartOffset();
+            end = blockStatements.get(blockStatements.size() - 1).range.getEndOffset();
+
+            final String preserved = getPreservedText(blockStatements, text);
+            if (block.length() == 0)
+            {
+                replacement = preserved;
+            }
+            else
+            {
+                replacement = preserved.length() == 0 ? block : block + "\n" + preserved;
+            }
+        }
+        else if (block.length() == 0)
+        {
+            return null;
+        }
+        else if (session.lastRequireOffset != -1)
+        {
+            start = end = session.lastRequireOffset;
+            replacement = "\n" + block;
+        }
+        else
+        {
+            start = end = Math.max(session.rootOffset, 0);
+            replacement = block + "\n";
+        }
+
+        if (replacement.contentEquals(text.subSequence(start, end)))
+        {
+            return null;
+        }
+        return new Edit(start, end, replacement, file.getModificationStamp());
+    }
+
+    @NotNull
+    static String createStatement(@NotNull final String namespace)
+    {
+        return "goog.require(\"" + namespace + "\");";
+    }
+
+    private static String buildBlock(final List<RequireLine> lines)
+    {
+        Collections.sort(lines, LINE_COMPARATOR);
+
+        final StringBuilder block = new StringBuilder();
+        final Set<String> written = new HashSet<String>();
+
+        for (RequireLine line : lines)
+        {
+            if (written.add(line.namespace))
+            {
+                if (block.length() > 0)
+                {
+                    block.append('\n');
+                }
+                block.append(line.text);
+            }
+        }
+        return block.toString();
+    }
+
+    /**
+     * Finds the statements of the require block, ordered by offset.
+     *
+     * @param session session of the file
+     * @param text    text of the file
+     * @return the first run of top level requires with only whitespace and comments between them, may be empty
+     */
+    private static List<ValidationSession.NamespaceStatement> findBlock(final ValidationSession session, final CharSequence text)
+    {
+        final List<ValidationSession.NamespaceStatement> requires =
+                new ArrayList<ValidationSession.NamespaceStatement>(session.requireStatements);
+
+        Collections.sort(requires, new Comparator<ValidationSession.NamespaceStatement>()
+        {
+            public int compare(final ValidationSession.NamespaceStatement o1, final ValidationSession.NamespaceStatement o2)
+            {
+                return o1.range.getStartOffset() - o2.range.getStartOffset();
+            }
+        });
+
+        final List<ValidationSession.NamespaceStatement> block = new ArrayList<ValidationSession.NamespaceStatement>();
+
+        for (ValidationSession.NamespaceStatement require : requires)
+        {
+            if (block.isEmpty())
+            {
+                if (require.topLevel)
+                {
+                    block.add(require);
+                }
+                continue;
+            }
+
+            final int previousEnd = block.get(block.size() - 1).range.getEndOffset();
+
+            // a statement requiring several namespaces is recorded once per namespace with the same range
+            if (require.topLevel && (require.range.getStartOffset() < previousEnd
+                    || isWhitespaceOrComment(text, previousEnd, require.range.getStartOffset())))
+            {
+                block.add(require);
+            }
+            else
+            {
+                break;
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Whether the text between the offsets consists of whitespace, line comments and block comments only.
+     */
+    static boolean isWhitespaceOrComment(@NotNull final CharSequence text, final int start, final int end)
+    {
+        int i = start;
+
+        while (i < end)
+        {
+            final char c = text.charAt(i);
+
+            if (Character.isWhitespace(c))
+            {
+                i++;
+            }
+            else if (c == '/' && i + 1 < end && text.charAt(i + 1) == '/')
+            {
+                while (i < end && text.charAt(i) != '\n')
+                {
+                    i++;
+                }
+            }
+            else if (c == '/' && i + 1 < end && text.charAt(i + 1) == '*')
+            {
+                i += 2;
+
+                while (i + 1 < end && !(text.charAt(i) == '*' && text.charAt(i + 1) == '/'))
+                {
+                    i++;
+                }
+
+                if (i + 1 >= end)
+                {
+                    return false;
+                }
+                i += 2;
+            }
+            else
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the comments between the require statements of the block so they can be kept below the
+     * rewritten block.
+     */
+    private static String getPreservedText(final List<ValidationSession.NamespaceStatement> block, final CharSequence text)
+    {
+        final StringBuilder preserved = new StringBuilder();
+
+        for (int i = 1; i < block.size(); i++)
+        {
+            final int gapStart = block.get(i - 1).range.getEndOffset();
+            final int gapEnd = block.get(i).range.getStartOffset();
+
+            if (gapStart < gapEnd)
+            {
+                final String gap = text.subSequence(gapStart, gapEnd).toString().trim();
+                if (gap.length() > 0)
+                {
+                    if (preserved.length() > 0)
+                    {
+                        preserved.append('\n');
+                    }
+                    preserved.append(gap);
+                }
+            }
+        }
+        return preserved.toString();
+    }
+
+    /**
+     * A pending replacement of the require block, valid as long as the file has not been modified.
+     */
+    static final class Edit
+    {
+        private final int start;
+        private final int end;
+        private final String replacement;
+        private final long modificationStamp;
+
+        private Edit(final int start, final int end, final String replacement, final long modificationStamp)
+        {
+            this.start = start;
+            this.end = end;
+            this.replacement = replacement;
+            this.modificationStamp = modificationStamp;
+        }
+
+        /**
+         * Applies the edit, must be called inside a write action.
+         *
+         * @param file file the edit was computed for
+         * @return false if the file changed since the edit was computed and nothing was written
+         */
+        boolean apply(@NotNull final PsiFile file)
+        {
+            final PsiDocumentManager documentManager = PsiDocumentManager.getInstance(file.getProject());
+            final Document document = documentManager.getDocument(file);
+
+            if (document == null || file.getModificationStamp() != modificationStamp)
+            {
+                return false;
+            }
+
+            documentManager.doPostponedOperationsAndUnblockDocument(document);
+            document.replaceString(start, end, replacement);
+            documentManager.commitDocument(document);
+            return true;
+        }
+    }
+
+    private static final class RequireLine
+    {
+        final boolean closureLibrary;
+        final String namespace;
+        final String text;
+
+        RequireLine(final String namespace, final String text)
+        {
+            this.closureLibrary = namespace.startsWith("goog.");
+            this.namespace = namespace;
+            this.text = text;
+        }
+    }
+}
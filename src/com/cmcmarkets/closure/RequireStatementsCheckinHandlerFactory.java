@@ -0,0 +1,304 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.openapi.vcs.CheckinProjectPanel;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.CommitContext;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vcs.checkin.CheckinHandler;
+import com.intellij.openapi.vcs.checkin.CheckinHandlerFactory;
+import com.intellij.openapi.vcs.ui.RefreshableOnComponent;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.usageView.UsageInfo;
+import com.intellij.usages.Usage;
+import com.intellij.usages.UsageInfo2UsageAdapter;
+import com.intellij.util.Processor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.BoxLayout;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Checks the goog.require statements of the files being committed. Besides the changed files themselves, files
+ * requiring a namespace that a changed file no longer provides are checked too, because they break as well.
+ * The files are analysed concurrently under a cancellable progress.
+ */
+public class RequireStatementsCheckinHandlerFactory extends CheckinHandlerFactory
+{
+    private static final String TITLE = "goog.require Check";
+
+    @NotNull
+    @Override
+    public CheckinHandler createHandler(@NotNull final CheckinProjectPanel panel, @NotNull final CommitContext commitContext)
+    {
+        return new RequireStatementsCheckinHandler(panel);
+    }
+
+    private static final class RequireStatementsCheckinHandler extends CheckinHandler
+    {
+        private final CheckinProjectPanel panel;
+        private final Project project;
+
+        RequireStatementsCheckinHandler(final CheckinProjectPanel panel)
+        {
+            this.panel = panel;
+            this.project = panel.getProject();
+        }
+
+        @Nullable
+        @Override
+        public RefreshableOnComponent getBeforeCheckinConfigurationPanel()
+        {
+            final JCheckBox checkBox = new JCheckBox("Check goog.require statements");
+
+            return new RefreshableOnComponent()
+            {
+                public JComponent getComponent()
+                {
+                    final JPanel component = new JPanel();
+                    component.setLayout(new BoxLayout(component, BoxLayout.X_AXIS));
+                    component.add(checkBox);
+                    return component;
+                }
+
+                public void refresh()
+                {
+                }
+
+                public void saveState()
+                {
+                    ClosureProjectSettings.getInstance(project).checkBeforeCommit = checkBox.isSelected();
+                }
+
+                public void restoreState()
+                {
+                    checkBox.setSelected(ClosureProjectSettings.getInstance(project).checkBeforeCommit);
+                }
+            };
+        }
+
+        @Override
+        public ReturnResult beforeCheckin()
+        {
+            if (!ClosureProjectSettings.getInstance(project).checkBeforeCommit || DumbService.isDumb(project))
+            {
+                return ReturnResult.COMMIT;
+            }
+
+            final List<Usage> problems = Collections.synchronizedList(new ArrayList<Usage>());
+            // the commit panel is a swing component, it is read here on the event dispatch thread
+            final List<Change> changes = new ArrayList<Change>(panel.getSelectedChanges());
+            final List<VirtualFile> virtualFiles = new ArrayList<VirtualFile>(panel.getVirtualFiles());
+
+            try
+            {
+                final boolean completed = ProgressManager.getInstance().runProcessWithProgressSynchronously(new Runnable()
+                {
+                    public void run()
+                    {
+                        check(ProgressManager.getInstance().getProgressIndicator(), changes, virtualFiles, problems);
+                    }
+                }, "Checking goog.require Statements", true, project);
+
+                if (!completed)
+                {
+                    return ReturnResult.CANCEL;
+                }
+            }
+            catch (ProcessCanceledException e)
+            {
+                return ReturnResult.CANCEL;
+            }
+
+            if (problems.isEmpty())
+            {
+                return ReturnResult.COMMIT;
+            }
+
+            final int answer = Messages.showYesNoCancelDialog(project,
+                    problems.size() + " goog.require problem(s) found in the files being committed or in files depending on them.",
+                    TITLE, "Review", "Commit", "Cancel", Messages.getWarningIcon());
+
+            if (answer == Messages.YES)
+            {
+                ShowMissingRequiresAction.showUsages(project, TITLE, new ArrayList<Usage>(problems));
+                return ReturnResult.CLOSE_WINDOW;
+            }
+            return answer == Messages.NO ? ReturnResult.COMMIT : ReturnResult.CANCEL;
+        }
+
+        private void check(final ProgressIndicator indicator, final Collection<Change> changes,
+                           final Collection<VirtualFile> virtualFiles, final List<Usage> problems)
+        {
+            indicator.setText("Finding namespaces no longer provided");
+            final Set<String> removedProvides = findRemovedProvides(changes);
+            final Map<VirtualFile, Set<String>> files = collectFiles(virtualFiles, removedProvides);
+
+            indicator.setText("Checking goog.require statements");
+            final PsiManager psiManager = PsiManager.getInstance(project);
+
+            JobLauncher.getInstance().invokeConcurrentlyUnderProgress(new ArrayList<VirtualFile>(files.keySet()), indicator,
+                    new Processor<VirtualFile>()
+                    {
+                        public boolean process(final VirtualFile virtualFile)
+                        {
+                            ApplicationManager.getApplication().runReadAction(new Runnable()
+                            {
+                                public void run()
+                                {
+                                    final PsiFile file = virtualFile.isValid() ? psiManager.findFile(virtualFile) : null;
+
+                                    if (file != null)
+                                    {
+                                        checkFile(file, files.get(virtualFile), problems);
+                                    }
+                                }
+                            });
+                            return true;
+                        }
+                    });
+        }
+
+        /**
+         * @return namespaces provided by the base revision of a changed file but not by its new content
+         */
+        private static Set<String> findRemovedProvides(final Collection<Change> changes)
+        {
+            final Set<String> removed = new HashSet<String>();
+
+            for (Change change : changes)
+            {
+                final ContentRevision before = change.getBeforeRevision();
+
+                if (before == null || !FileUtilRt.extensionEquals(before.getFile().getName(), "js"))
+                {
+                    continue;
+                }
+
+                try
+                {
+                    final String beforeContent = before.getContent();
+                    final ContentRevision after = change.getAfterRevision();
+                    final String afterContent = after != null ? after.getContent() : null;
+
+                    if (beforeContent != null)
+                    {
+                        removed.addAll(ClosureDeclarations.findProvides(beforeContent));
+                    }
+                    if (afterContent != null)
+                    {
+                        removed.removeAll(ClosureDeclarations.findProvides(afterContent));
+                    }
+                }
+                catch (VcsException e)
+                {
+                    // without the base revision removed provides cannot be detected, the changed file is still checked
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * @return changed javascript files and files requiring a removed namespace, each with the removed
+         * namespaces it requires
+         */
+        private Map<VirtualFile, Set<String>> collectFiles(final Collection<VirtualFile> virtualFiles, final Set<String> removedProvides)
+        {
+            final Map<VirtualFile, Set<String>> files = new HashMap<VirtualFile, Set<String>>();
+
+            for (VirtualFile file : virtualFiles)
+            {
+                if (ClosureDeclarations.isJavaScriptFile(file))
+                {
+                    files.put(file, new HashSet<String>());
+                }
+            }
+
+            ApplicationManager.getApplication().runReadAction(new Runnable()
+            {
+                public void run()
+                {
+                    for (String namespace : removedProvides)
+                    {
+                        // still provided by another file, for example after a move
+                        if (ClosureNamespaceIndex.isProvided(project, namespace))
+                        {
+                            continue;
+                        }
+
+                        for (VirtualFile file : ClosureRequireIndex.getRequiringFiles(project, namespace))
+                        {
+                            Set<String> removed = files.get(file);
+                            if (removed == null)
+                            {
+                                removed = new HashSet<String>();
+                                files.put(file, removed);
+                            }
+                            removed.add(namespace);
+                        }
+                    }
+                }
+            });
+            return files;
+        }
+
+        private void checkFile(final PsiFile file, final Set<String> removedRequires, final List<Usage> problems)
+        {
+            // the file filters and large file handling configured for the inspection apply
+            final ValidationSession session = ValidateRequireStatementsInspection.getOptions(file).getSession(file);
+
+            if (session == null)
+            {
+                return;
+            }
+
+            for (TextRange range : session.errorRanges.keySet())
+            {
+                problems.add(createUsage(file, range));
+            }
+
+            for (ValidationSession.NamespaceStatement require : session.requireStatements)
+            {
+                if (removedRequires.contains(require.namespace))
+                {
+                    problems.add(createUsage(file, require.range));
+                }
+            }
+        }
+
+        private static Usage createUsage(final PsiFile file, final TextRange range)
+        {
+            return new UsageInfo2UsageAdapter(new UsageInfo(file, range.getStartOffset(), range.getEndOffset()));
+        }
+    }
+}
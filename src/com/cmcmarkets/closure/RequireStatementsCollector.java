@@ -0,0 +1,635 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.lang.javascript.psi.JSArgumentList;
+import com.intellij.lang.javascript.psi.JSCallExpression;
+import com.intellij.lang.javascript.psi.JSExpression;
+import com.intellij.lang.javascript.psi.JSExpressionStatement;
+import com.intellij.lang.javascript.psi.JSFunction;
+import com.intellij.lang.javascript.psi.JSLiteralExpression;
+import com.intellij.lang.javascript.psi.JSNewExpression;
+import com.intellij.lang.javascript.psi.JSReferenceExpression;
+import com.intellij.lang.javascript.psi.JSVariable;
+import com.intellij.lang.javascript.psi.jsdoc.JSDocTagValue;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiExpressionStatement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiLiteralExpression;
+import com.intellij.psi.PsiMethodCallExpression;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Walks the PSI of a closure file and fills a {@link ValidationSession} with the require, provide and local
+ * variable declarations and the references that need a goog.require statement.
+ */
+class RequireStatementsCollector
+{
+    private static final byte VISIT = 0;
+    private static final byte CHILDREN = 1;
+    private static final byte CALL = 2;
+    private static final byte REFERENCE = 3;
+    private static final byte REQUIRE_ARGUMENTS = 4;
+    private static final byte PROVIDE_ARGUMENTS = 5;
+
+    /**
+     * Number of work items processed between two cancellation checks, must be a power of two
+     */
+    private static final int CANCEL_CHECK_INTERVAL = 256;
+
+    private final ValidationSession session;
+    private final ClosureGlobals globals;
+    private final boolean topLevelOnly;
+    private final WorkStack stack = new WorkStack();
+    private final List<String> references = new ArrayList<String>();
+
+    /**
+     * @param session      session to fill
+     * @param globals      names that never need a goog.require
+     * @param topLevelOnly if true function bodies are not visited, used for files above the size threshold
+     */
+    RequireStatementsCollector(@NotNull final ValidationSession session, @NotNull final ClosureGlobals globals,
+                               final boolean topLevelOnly)
+    {
+        this.session = session;
+        this.globals = globals;
+        this.topLevelOnly = topLevelOnly;
+    }
+
+    void collect(@NotNull final PsiFile file)
+    {
+        pushChildren(file);
+
+        int processed = 0;
+
+        while (!stack.isEmpty())
+        {
+            if ((++processed & (CANCEL_CHECK_INTERVAL - 1)) == 0)
+            {
+                ProgressManager.checkCanceled();
+            }
+
+            final byte kind = stack.topKind();
+            final PsiElement element = stack.topElement();
+            final String text = stack.topText();
+            stack.pop();
+
+            switch (kind)
+            {
+                case CHILDREN:
+                    pushChildren(element);
+                    break;
+                case CALL:
+                    processJSCallExpression((JSCallExpression) element);
+                    break;
+                case REFERENCE:
+                    processReferenceExpression(element, text);
+                    break;
+                case REQUIRE_ARGUMENTS:
+                    processRequireArguments((JSArgumentList) element);
+                    break;
+                case PROVIDE_ARGUMENTS:
+                    processProvideArguments((JSArgumentList) element);
+                    break;
+                default:
+                    processElement(element);
+                    break;
+            }
+        }
+
+        session.nodesVisited = processed;
+
+        if (!topLevelOnly)
+        {
+            resolveUnusedRequires();
+        }
+    }
+
+    /**
+     * Fills only the top level goog.require and goog.provide statements, without looking at any reference or
+     * descending into the statements. Enough to compute the require block of the file.
+     *
+     * @param file javascript file
+     */
+    void collectDeclarations(@NotNull final PsiFile file)
+    {
+        for (PsiElement child : file.getChildren())
+        {
+            if (session.rootOffset == -1)
+            {
+                session.rootOffset = child.getTextRange().getStartOffset();
+            }
+
+            final PsiElement expression = child instanceof JSExpressionStatement ? ((JSExpressionStatement) child).getExpression() : null;
+
+            if (!isCall(expression))
+            {
+                continue;
+            }
+
+            final JSCallExpression call = (JSCallExpression) expression;
+            final JSExpression method = call.getMethodExpression();
+            final JSArgumentList arguments = call.getArgumentList();
+
+            if (method == null || arguments == null)
+            {
+                continue;
+            }
+
+            if (method.textMatches("goog.require"))
+            {
+                processRequireArguments(arguments);
+            }
+            else if (method.textMatches("goog.provide"))
+            {
+                processProvideArguments(arguments);
+            }
+        }
+    }
+
+    /**
+     * Marks every require that no reference starts with as unused. Most requires match one of the first
+     * references, so the list of candidates shrinks quickly.
+     */
+    private void resolveUnusedRequires()
+    {
+        final List<String> unused = new ArrayList<String>(session.requireSet);
+
+        for (int i = 0; i < references.size() && !unused.isEmpty(); i++)
+        {
+            final String reference = references.get(i);
+
+            for (Iterator<String> iterator = unused.iterator(); iterator.hasNext(); )
+            {
+                final String namespace = iterator.next();
+
+                if (reference.startsWith(namespace)
+                        && (reference.length() == namespace.length() || reference.charAt(namespace.length()) == '.'))
+                {
+                    iterator.remove();
+                }
+            }
+        }
+
+        session.unusedRequires.addAll(unused);
+        references.clear();
+    }
+
+    private void pushChildren(final PsiElement element)
+    {
+        final PsiElement[] children = element.getChildren();
+
+        for (int i = children.length - 1; i >= 0; i--)
+        {
+            stack.push(VISIT, children[i], null);
+        }
+    }
+
+    private void processElement(final PsiElement child)
+    {
+        if (session.rootOffset == -1)
+        {
+            session.rootOffset = child.getTextRange().getStartOffset();
+        }
+
+        if (isCall(child) && child.getFirstChild() instanceof JSReferenceExpression)
+        {
+            processJSCallExpression((JSCallExpression) child);
+        }
+        else if (child instanceof PsiExpressionStatement)
+        {
+            processPsiExpressionStatement((PsiExpressionStatement) child);
+        }
+        else if (child instanceof JSReferenceExpression)
+        {
+            processReferenceExpression(child, child.getText());
+        }
+        else if (child instanceof JSDocTagValue)
+        {
+            processDocTagValue(child);
+        }
+        else
+        {
+            if (child instanceof JSVariable)
+            {
+                processVarStatement((JSVariable) child);
+            }
+
+            if (!topLevelOnly || !(child instanceof JSFunction))
+            {
+                pushChildren(child);
+            }
+        }
+    }
+
+    private void processDocTagValue(final PsiElement element)
+    {
+        final int start = element.getTextRange().getStartOffset();
+
+        for (JSDocTypeParser.TypeName type : JSDocTypeParser.parse(element.getText()))
+        {
+            // undotted names such as string or Array never need a goog.require
+            if (type.name.indexOf('.') != -1)
+            {
+                processReference(element, type.name, start + type.offset);
+            }
+        }
+    }
+
+    private void processPsiExpressionStatement(final PsiExpressionStatement element)
+    {
+        final PsiExpression expression = element.getExpression();
+
+        if (!(expression instanceof PsiMethodCallExpression))
+        {
+            return;
+        }
+
+        final PsiMethodCallExpression call = (PsiMethodCallExpression) expression;
+
+        if (call.getMethodExpression().textMatches("goog.require"))
+        {
+            for (PsiExpression argument : call.getArgumentList().getExpressions())
+            {
+                if (argument instanceof PsiLiteralExpression)
+                {
+                    addRequire(removeQuotes(argument.getText()), element);
+                }
+            }
+        }
+    }
+
+    private void processJSCallExpression(final JSCallExpression element)
+    {
+        boolean requireStatement = false;
+        boolean provideStatement = false;
+        final int mark = stack.size();
+
+        for (PsiElement child : element.getChildren())
+        {
+            String childText = null;
+
+            if (child instanceof JSReferenceExpression)
+            {
+                childText = child.getText();
+
+                if (childText.equals("goog.require"))
+                {
+                    requireStatement = true;
+                }
+                else if (childText.equals("goog.provide"))
+                {
+                    provideStatement = true;
+                }
+            }
+
+            if (requireStatement || provideStatement)
+            {
+                if (child instanceof JSArgumentList)
+                {
+                    stack.push(requireStatement ? REQUIRE_ARGUMENTS : PROVIDE_ARGUMENTS, child, null);
+                }
+            }
+            else if (childText != null)
+            {
+                PsiElement firstChild = child.getFirstChild();
+
+                if (isCall(firstChild))
+                {
+                    stack.push(CALL, firstChild, null);
+                }
+                else
+                {
+                    stack.push(REFERENCE, child, childText);
+                }
+            }
+            else
+            {
+                stack.push(CHILDREN, child, null);
+            }
+        }
+
+        // children were pushed in source order, reverse them so they are popped in source order
+        stack.reverseFrom(mark);
+    }
+
+    private void processRequireArguments(final JSArgumentList arguments)
+    {
+        final PsiElement statement = arguments.getParent().getParent();
+
+        for (JSExpression argument : arguments.getArguments())
+        {
+            if (argument instanceof JSLiteralExpression)
+            {
+                addRequire(removeQuotes(argument.getText()), statement);
+            }
+        }
+    }
+
+    private void addRequire(final String namespace, final PsiElement statement)
+    {
+        final ValidationSession.NamespaceStatement require = new ValidationSession.NamespaceStatement(namespace, statement);
+        session.requireSet.add(namespace);
+        session.requireStatements.add(require);
+
+        // requires nested in functions are not part of the require block, new requires never go next to them
+        if (require.topLevel)
+        {
+            session.lastRequireOffset = require.range.getEndOffset();
+            session.requireElementFound = true;
+        }
+    }
+
+    private void processProvideArguments(final JSArgumentList arguments)
+    {
+        final PsiElement statement = arguments.getParent().getParent();
+
+        for (JSExpression argument : arguments.getArguments())
+        {
+            if (argument instanceof JSLiteralExpression)
+            {
+                final ValidationSession.NamespaceStatement provide =
+                        new ValidationSession.NamespaceStatement(removeQuotes(argument.getText()), statement);
+                session.provideSet.add(provide.namespace);
+                session.provideStatements.add(provide);
+                if (!session.requireElementFound && provide.topLevel)
+                {
+                    session.lastRequireOffset = provide.range.getEndOffset();
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the element is a plain call; constructor calls are JSCallExpressions too but are treated as references.
+     *
+     * @param element psi element, may be null
+     * @return true for a function or method call
+     */
+    private static boolean isCall(final PsiElement element)
+    {
+        return element instanceof JSCallExpression && !(element instanceof JSNewExpression);
+    }
+
+    /**
+     * removes both single and double quotes
+     *
+     * @param text string text
+     * @return text without quotes
+     */
+    private static String removeQuotes(final String text)
+    {
+        if (text.indexOf('"') == -1 && text.indexOf('\'') == -1)
+        {
+            return text;
+        }
+
+        final StringBuilder builder = new StringBuilder(text.length());
+
+        for (int i = 0; i < text.length(); i++)
+        {
+            final char c = text.charAt(i);
+            if (c != '"' && c != '\'')
+            {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private void processReferenceExpression(final PsiElement element, final String reference)
+    {
+        processReference(element, reference, -1);
+    }
+
+    /**
+     * Records the namespace a reference needs, if any.
+     *
+     * @param element   reference expression, or the JSDoc tag value containing the reference
+     * @param reference qualified name
+     * @param docOffset offset of a type name inside a JSDoc tag value, -1 for a reference expression
+     */
+    private void processReference(PsiElement element, String reference, final int docOffset)
+    {
+        references.add(reference);
+        session.referencesClassified++;
+
+        // qualified references are resolved by walking down the qualifier chain instead of recursing
+        while (true)
+        {
+            final int index = reference.lastIndexOf('.');
+
+            if (index == -1)
+            {
+                return;
+            }
+
+            final int length = reference.length();
+            session.classifierCalls++;
+            boolean includeLastElement = !ReferenceClassifier.isConstant(reference, index + 1, length);
+
+            if (includeLastElement)
+            {
+                //Don't include method calls
+                includeLastElement = !isCall(element.getParent());
+            }
+
+            if (includeLastElement)
+            {
+                session.classifierCalls++;
+                includeLastElement = !ReferenceClassifier.isClass(reference, 0, index);
+            }
+
+            if (includeLastElement)
+            {
+                session.classifierCalls++;
+                if (ReferenceClassifier.hasClassSegment(reference))
+                {
+                    session.classifierCalls++;
+                    includeLastElement = ReferenceClassifier.isClass(reference, index + 1, length);
+                }
+            }
+
+            final boolean thisReference = reference.startsWith("this");
+            final PsiElement elementToTest;
+            final String definition;
+
+            if (includeLastElement)
+            {
+                elementToTest = element;
+                definition = reference;
+
+                if (!thisReference && !ReferenceClassifier.containsPrototype(reference, length))
+                {
+                    String firstElement = reference.substring(0, reference.indexOf('.'));
+
+                    if (!shouldHighlight(firstElement) && !globals.contains(firstElement))
+                    {
+                        return;
+                    }
+                }
+            }
+            else
+            {
+                if (reference.indexOf('.') < index && !thisReference && !ReferenceClassifier.containsPrototype(reference, index))
+                {
+                    if (docOffset != -1)
+                    {
+                        reference = reference.substring(0, index);
+                        continue;
+                    }
+
+                    PsiElement firstChild = element.getFirstChild();
+                    if (firstChild instanceof JSReferenceExpression)
+                    {
+                        element = firstChild;
+                        reference = firstChild.getText();
+                        continue;
+                    }
+                    return;
+                }
+
+                elementToTest = docOffset != -1 ? element : element.getFirstChild();
+                if (elementToTest == null)
+                {
+                    return;
+                }
+                definition = reference.substring(0, index);
+            }
+
+            if (shouldHighlight(definition))
+            {
+                if (docOffset != -1)
+                {
+                    // a tag value may name several types, each one gets the range of its own name
+                    session.errorRanges.put(new TextRange(docOffset, docOffset + definition.length()), definition);
+                }
+                else
+                {
+                    highlightElement(elementToTest, definition);
+                }
+            }
+            return;
+        }
+    }
+
+    private boolean shouldHighlight(final String definition)
+    {
+        final boolean localVar;
+        final boolean allowedKeyword;
+        final boolean provideKeyword;
+        final boolean imported;
+
+        localVar = session.localVariableSet.contains(definition);
+        allowedKeyword = globals.contains(definition);
+        provideKeyword = session.provideSet.contains(definition);
+        imported = session.requireSet.contains(definition);
+
+        return !(allowedKeyword || localVar || provideKeyword || imported || definition.startsWith("this") || definition.contains(".prototype"));
+    }
+
+    private void processVarStatement(final JSVariable variable)
+    {
+        // the name only, getText() would copy the whole initializer
+        final String localVar = variable.getName();
+
+        if (localVar != null)
+        {
+            session.localVariableSet.add(localVar);
+        }
+    }
+
+    private void highlightElement(@NotNull PsiElement element, @NotNull String namespace)
+    {
+        session.errorRanges.put(element.getTextRange(), namespace);
+    }
+
+    /**
+     * Explicit stack of pending work, kept in parallel arrays so pushing an item does not allocate.
+     */
+    private static final class WorkStack
+    {
+        private byte[] kinds = new byte[64];
+        private PsiElement[] elements = new PsiElement[64];
+        private String[] texts = new String[64];
+        private int size;
+
+        void push(final byte kind, final PsiElement element, final String text)
+        {
+            if (size == kinds.length)
+            {
+                kinds = Arrays.copyOf(kinds, size * 2);
+                elements = Arrays.copyOf(elements, size * 2);
+                texts = Arrays.copyOf(texts, size * 2);
+            }
+
+            kinds[size] = kind;
+            elements[size] = element;
+            texts[size] = text;
+            size++;
+        }
+
+        void pop()
+        {
+            size--;
+            elements[size] = null;
+            texts[size] = null;
+        }
+
+        byte topKind()
+        {
+            return kinds[size - 1];
+        }
+
+        PsiElement topElement()
+        {
+            return elements[size - 1];
+        }
+
+        String topText()
+        {
+            return texts[size - 1];
+        }
+
+        int size()
+        {
+            return size;
+        }
+
+        boolean isEmpty()
+        {
+            return size == 0;
+        }
+
+        void reverseFrom(final int from)
+        {
+            for (int i = from, j = size - 1; i < j; i++, j--)
+            {
+                final byte kind = kinds[i];
+                kinds[i] = kinds[j];
+                kinds[j] = kind;
+
+                final PsiElement element = elements[i];
+                elements[i] = elements[j];
+                elements[j] = element;
+
+                final String text = texts[i];
+                texts[i] = texts[j];
+                texts[j] = text;
+            }
+        }
+    }
+}
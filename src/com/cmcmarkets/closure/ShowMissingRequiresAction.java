@@ -0,0 +1,203 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.usageView.UsageInfo;
+import com.intellij.usages.Usage;
+import com.intellij.usages.UsageInfo2UsageAdapter;
+import com.intellij.usages.UsageTarget;
+import com.intellij.usages.UsageViewManager;
+import com.intellij.usages.UsageViewPresentation;
+import com.intellij.util.indexing.FileBasedIndex;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Lists every reference in the project that needs a goog.require statement in the usage view. The list is
+ * read from {@link ClosureUnresolvedIndex}, so no file is analysed unless its content changed. Every namespace
+ * is read in its own read action, which gives way to write actions.
+ */
+public class ShowMissingRequiresAction extends AnAction
+{
+    private static final String TITLE = "Missing goog.require Statements";
+
+    @Override
+    public void update(@NotNull final AnActionEvent e)
+    {
+        e.getPresentation().setEnabledAndVisible(e.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull final AnActionEvent e)
+    {
+        final Project project = e.getProject();
+
+        if (project == null)
+        {
+            return;
+        }
+
+        if (DumbService.isDumb(project))
+        {
+            DumbService.getInstance(project).showDumbModeNotification(TITLE + " are available once indexing has finished");
+            return;
+        }
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, TITLE, true)
+        {
+            private final List<Usage> usages = new ArrayList<Usage>();
+
+            public void run(@NotNull final ProgressIndicator indicator)
+            {
+                collectUsages(project, usages, indicator);
+            }
+
+            @Override
+            public void onSuccess()
+            {
+                showUsages(project, TITLE, usages);
+            }
+        });
+    }
+
+    /**
+     * Shows goog.require problems in the usage view.
+     *
+     * @param project current project
+     * @param title   tab title
+     * @param usages  problem locations
+     */
+    static void showUsages(@NotNull final Project project, @NotNull final String title, @NotNull final List<Usage> usages)
+    {
+        final UsageViewPresentation presentation = new UsageViewPresentation();
+        presentation.setTabText(title);
+        presentation.setTabName(title);
+        presentation.setToolwindowTitle(title);
+        presentation.setUsagesString("goog.require problems");
+        presentation.setCodeUsagesString("goog.require problems");
+        presentation.setOpenInNewTab(false);
+
+        UsageViewManager.getInstance(project).showUsages(UsageTarget.EMPTY_ARRAY,
+                usages.toArray(new Usage[usages.size()]), presentation);
+    }
+
+    /**
+     * Runs a read action that gives way to write actions, so a long background task never blocks typing. An
+     * interrupted action is restarted once the pending write actions are done, it must therefore have no effect
+     * other than its result.
+     *
+     * @param action    read action
+     * @param indicator progress of the task, checked for cancellation between attempts
+     */
+    static void runReadActionYielding(@NotNull final Runnable action, @NotNull final ProgressIndicator indicator)
+    {
+        while (!ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(action))
+        {
+            indicator.checkCanceled();
+            ProgressIndicatorUtils.yieldToPendingWriteActions();
+        }
+    }
+
+    private static void collectUsages(final Project project, final List<Usage> usages, final ProgressIndicator indicator)
+    {
+        final FileBasedIndex index = FileBasedIndex.getInstance();
+        final GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        final PsiManager psiManager = PsiManager.getInstance(project);
+        final List<String> namespaces = new ArrayList<String>();
+
+        runReadActionYielding(new Runnable()
+        {
+            public void run()
+            {
+                namespaces.clear();
+
+                // the index only knows the built in globals, the globals of the project settings and externs apply here
+                final ClosureGlobals globals = ClosureGlobals.getInstance(project);
+
+                for (String namespace : index.getAllKeys(ClosureUnresolvedIndex.NAME, project))
+                {
+                    if (!isProjectGlobal(globals, namespace))
+                    {
+                        namespaces.add(namespace);
+                    }
+                }
+            }
+        }, indicator);
+
+        for (final String namespace : namespaces)
+        {
+            indicator.checkCanceled();
+            indicator.setText2(namespace);
+
+            final List<Usage> found = new ArrayList<Usage>();
+
+            runReadActionYielding(new Runnable()
+            {
+                public void run()
+                {
+                    found.clear();
+
+                    // references to namespaces nobody provides are reported by the inspection, they have no fix here
+                    if (!ClosureNamespaceIndex.isProvided(project, namespace))
+                    {
+                        return;
+                    }
+
+                    index.processValues(ClosureUnresolvedIndex.NAME, namespace, null, new FileBasedIndex.ValueProcessor<int[]>()
+                    {
+                        public boolean process(final VirtualFile virtualFile, final int[] offsets)
+                        {
+                            final PsiFile file = psiManager.findFile(virtualFile);
+
+                            if (file != null)
+                            {
+                                for (int i = 0; i + 1 < offsets.length; i += 2)
+                                {
+                                    found.add(new UsageInfo2UsageAdapter(new UsageInfo(file, offsets[i], offsets[i + 1])));
+                                }
+                            }
+                            return true;
+                        }
+                    }, scope);
+                }
+            }, indicator);
+
+            usages.addAll(found);
+        }
+    }
+
+    /**
+     * @return true if the namespace, or its first segment when that is not a built in global such as goog, is
+     * declared by the project globals
+     */
+    private static boolean isProjectGlobal(final ClosureGlobals globals, final String namespace)
+    {
+        if (globals.contains(namespace))
+        {
+            return true;
+        }
+
+        final int dot = namespace.indexOf('.');
+        final String root = dot == -1 ? namespace : namespace.substring(0, dot);
+        return !ClosureGlobals.BUILT_IN_GLOBALS.contains(root) && globals.contains(root);
+    }
+}
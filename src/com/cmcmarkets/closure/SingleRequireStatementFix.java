@@ -0,0 +1,53 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ */
+class SingleRequireStatementFix implements LocalQuickFix
+{
+    private final String namespace;
+
+    SingleRequireStatementFix(@NotNull final String namespace)
+    {
+        this.namespace = namespace;
+    }
+
+    @NotNull
+    public String getName()
+    {
+        return "Add goog.require statement";
+    }
+
+
+    public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor)
+    {
+        final PsiElement element = descriptor.getPsiElement();
+
+        if (element == null || !ClosureNamespaceIndex.isProvided(project, namespace))
+        {
+            return;
+        }
+
+        final ValidationSession session = ValidationSession.getSession(element.getContainingFile());
+        RequireBlock.rewrite(element.getContainingFile(), session, Collections.singleton(namespace));
+    }
+
+    @NotNull
+    public String getFamilyName()
+    {
+        return getName();
+    }
+}
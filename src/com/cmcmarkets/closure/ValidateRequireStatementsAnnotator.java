@@ -0,0 +1,244 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.codeHighlighting.HighlightDisplayLevel;
+import com.intellij.codeInsight.daemon.HighlightDisplayKey;
+import com.intellij.codeInspection.InspectionManager;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemHighlightType;
+import com.intellij.codeInspection.ex.InspectionProfileImpl;
+import com.intellij.lang.annotation.Annotation;
+import com.intellij.lang.annotation.AnnotationHolder;
+import com.intellij.lang.annotation.ExternalAnnotator;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Editor highlighting of the require statement checks outside the main highlighting pass, used instead of the
+ * on the fly inspection when {@link ClosureProjectSettings#useExternalAnnotator} is set. A snapshot of the file
+ * is taken in the read action of the highlighting pass and the analysis is dropped if the file changed before it
+ * starts or before its result is applied. The analysis itself runs in a read action that gives way to write
+ * actions, so typing cancels it instead of waiting for it. The daemon already delays the external annotator
+ * pass after typing, it never waits itself as that would block the queue shared by all external annotators.
+ * <p/>
+ * The options and the enabled state of the inspection in the current profile still apply.
+ */
+public class ValidateRequireStatementsAnnotator extends ExternalAnnotator<ValidateRequireStatementsAnnotator.Snapshot, ValidateRequireStatementsAnnotator.Analysis>
+{
+    private static final byte MISSING_REQUIRE = 0;
+    private static final byte NOT_PROVIDED = 1;
+    private static final byte UNUSED_REQUIRE = 2;
+
+    @Nullable
+    @Override
+    public Snapshot collectInformation(@NotNull final PsiFile file, @NotNull final Editor editor, final boolean hasErrors)
+    {
+        final Project project = file.getProject();
+
+        if (!ClosureProjectSettings.getInstance(project).useExternalAnnotator
+                || !file.getFileType().getDefaultExtension().equals("js"))
+        {
+            return null;
+        }
+
+        final InspectionProfileImpl profile = InspectionProjectProfileManager.getInstance(project).getCurrentProfile();
+        final ValidateRequireStatementsInspection inspection = (ValidateRequireStatementsInspection) profile.getUnwrappedTool(
+                ValidateRequireStatementsInspection.SHORT_NAME, file);
+        final HighlightDisplayKey key = HighlightDisplayKey.find(ValidateRequireStatementsInspection.SHORT_NAME);
+
+        if (inspection == null || key == null || !profile.isToolEnabled(key, file)
+                || profile.getErrorLevel(key, file) == HighlightDisplayLevel.DO_NOT_SHOW)
+        {
+            return null;
+        }
+
+        final CharSequence text = file.getViewProvider().getContents();
+
+        if (inspection.skipNonClosureFiles && !ClosureFileFilter.usesClosure(text))
+        {
+            return null;
+        }
+
+        final boolean largeFile = text.length() > inspection.largeFileThreshold;
+
+        if (largeFile && inspection.skipMinifiedFiles && ClosureFileFilter.isMinified(text))
+        {
+            return null;
+        }
+        return new Snapshot(file, file.getModificationStamp(), largeFile);
+    }
+
+    @Nullable
+    @Override
+    public Analysis doAnnotate(final Snapshot snapshot)
+    {
+        final List<Finding> findings = new ArrayList<Finding>();
+        final boolean completed = ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(new Runnable()
+        {
+            public void run()
+            {
+                if (snapshot.isCurrent())
+                {
+                    analyse(snapshot, findings);
+                }
+            }
+        });
+
+        // a write action interrupted the analysis, the highlighting pass is restarted after it anyway
+        return completed ? new Analysis(snapshot.modificationStamp, findings) : null;
+    }
+
+    @Override
+    public void apply(@NotNull final PsiFile file, final Analysis analysis, @NotNull final AnnotationHolder holder)
+    {
+        if (analysis == null || file.getModificationStamp() != analysis.modificationStamp)
+        {
+            return;
+        }
+
+        final InspectionManager inspectionManager = InspectionManager.getInstance(file.getProject());
+        final LocalQuickFix removeUnusedRequireFix = new RemoveUnusedRequireFix();
+        final LocalQuickFix multipleRequireStatementFix = new MultipleRequireStatementFix();
+        int errors = 0;
+
+        for (Finding finding : analysis.findings)
+        {
+            if (finding.kind != UNUSED_REQUIRE)
+            {
+                errors++;
+            }
+        }
+
+        for (Finding finding : analysis.findings)
+        {
+            final PsiElement element = ValidationSession.findProblemElement(file, finding.range);
+
+            if (element == null)
+            {
+                continue;
+            }
+
+            switch (finding.kind)
+            {
+                case MISSING_REQUIRE:
+                    final Annotation error = holder.createErrorAnnotation(finding.range,
+                            ValidateRequireStatementsInspection.MISSING_REQUIRE_MESSAGE);
+                    register(error, inspectionManager, element, ValidateRequireStatementsInspection.MISSING_REQUIRE_MESSAGE,
+                            new SingleRequireStatementFix(finding.namespace), ProblemHighlightType.ERROR);
+                    if (errors > 1)
+                    {
+                        register(error, inspectionManager, element, ValidateRequireStatementsInspection.MISSING_REQUIRE_MESSAGE,
+                                multipleRequireStatementFix, ProblemHighlightType.ERROR);
+                    }
+                    break;
+                case NOT_PROVIDED:
+                    holder.createErrorAnnotation(finding.range, ValidateRequireStatementsInspection.getNotProvidedMessage(finding.namespace));
+                    break;
+                default:
+                    final Annotation annotation = holder.createWeakWarningAnnotation(finding.range,
+                            ValidateRequireStatementsInspection.UNUSED_REQUIRE_MESSAGE);
+                    annotation.setHighlightType(ProblemHighlightType.LIKE_UNUSED_SYMBOL);
+                    register(annotation, inspectionManager, element, ValidateRequireStatementsInspection.UNUSED_REQUIRE_MESSAGE,
+                            removeUnusedRequireFix, ProblemHighlightType.LIKE_UNUSED_SYMBOL);
+                    break;
+            }
+        }
+    }
+
+    private static void register(final Annotation annotation, final InspectionManager inspectionManager, final PsiElement element,
+                                 final String message, final LocalQuickFix fix, final ProblemHighlightType highlightType)
+    {
+        final TextRange rangeInElement = new TextRange(annotation.getStartOffset(), annotation.getEndOffset())
+                .shiftRight(-element.getTextRange().getStartOffset());
+        final ProblemDescriptor descriptor = inspectionManager.createProblemDescriptor(element, rangeInElement, message,
+                highlightType, true, fix);
+        annotation.registerFix(fix, null, null, descriptor);
+    }
+
+    private static void analyse(final Snapshot snapshot, final List<Finding> findings)
+    {
+        final ValidationSession session = ValidationSession.getSession(snapshot.file, snapshot.largeFile);
+        final Project project = snapshot.file.getProject();
+
+        for (Map.Entry<TextRange, String> error : session.errorRanges.entrySet())
+        {
+            final String namespace = error.getValue();
+            findings.add(new Finding(error.getKey(), namespace,
+                    ClosureNamespaceIndex.isProvided(project, namespace) ? MISSING_REQUIRE : NOT_PROVIDED));
+        }
+
+        for (ValidationSession.NamespaceStatement require : session.requireStatements)
+        {
+            if (session.unusedRequires.contains(require.namespace))
+            {
+                findings.add(new Finding(require.range, require.namespace, UNUSED_REQUIRE));
+            }
+        }
+    }
+
+    /**
+     * State of the file taken when the highlighting pass started
+     */
+    static final class Snapshot
+    {
+        final PsiFile file;
+        final long modificationStamp;
+        final boolean largeFile;
+
+        Snapshot(final PsiFile file, final long modificationStamp, final boolean largeFile)
+        {
+            this.file = file;
+            this.modificationStamp = modificationStamp;
+            this.largeFile = largeFile;
+        }
+
+        boolean isCurrent()
+        {
+            return file.isValid() && file.getModificationStamp() == modificationStamp;
+        }
+    }
+
+    static final class Analysis
+    {
+        final long modificationStamp;
+        final List<Finding> findings;
+
+        Analysis(final long modificationStamp, final List<Finding> findings)
+        {
+            this.modificationStamp = modificationStamp;
+            this.findings = findings;
+        }
+    }
+
+    static final class Finding
+    {
+        final TextRange range;
+        final String namespace;
+        final byte kind;
+
+        Finding(final TextRange range, final String namespace, final byte kind)
+        {
+            this.range = range;
+            this.namespace = namespace;
+            this.kind = kind;
+        }
+    }
+}
@@ -1,24 +1,34 @@
 package com.cmcmarkets.closure;
 
 import com.intellij.codeInsight.daemon.GroupNames;
+import com.intellij.codeInspection.InspectionProfileEntry;
 import com.intellij.codeInspection.LocalInspectionTool;
 import com.intellij.codeInspection.LocalQuickFix;
-import com.intellij.codeInspection.ProblemDescriptor;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
-import com.intellij.openapi.project.Project;
+import com.intellij.codeInspection.ex.InspectionProfileImpl;
+import com.intellij.openapi.ui.VerticalFlowLayout;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
 import com.intellij.psi.PsiElement;
-import com.intellij.psi.PsiElementFactory;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
 import org.jetbrains.annotations.NotNull;
-
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.TreeSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JFormattedTextField;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import java.awt.FlowLayout;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.text.NumberFormat;
+import java.util.Map;
 
 /**
  * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
@@ -30,40 +40,24 @@ import java.util.regex.Pattern;
  */
 public class ValidateRequireStatementsInspection extends LocalInspectionTool
 {
-    private static Set<String> allowedKeywords;
-    private static Pattern CONSTANT_PATTERN = Pattern.compile("[A-Z0-9_]+");
-    private static Pattern CLASS_PATTERN = Pattern.compile("[A-Z]{1}[a-zA-Z1-9]+");
+    static final String SHORT_NAME = "ValidateRequireStatements";
+    static final String MISSING_REQUIRE_MESSAGE = "Reference needs goog.require statement";
+    static final String UNUSED_REQUIRE_MESSAGE = "Unused goog.require statement";
 
-    static
-    {
-        allowedKeywords = new HashSet<String>();
-        allowedKeywords.add("Math");
-        allowedKeywords.add("Number");
-        allowedKeywords.add("String");
-        allowedKeywords.add("Boolean");
-        allowedKeywords.add("Array");
-        allowedKeywords.add("Blob");
-        allowedKeywords.add("Date");
-        allowedKeywords.add("Object");
-        allowedKeywords.add("RegEx");
-        allowedKeywords.add("Text");
-        allowedKeywords.add("goog");
-        allowedKeywords.add("JSON");
-        allowedKeywords.add("...*");
-        allowedKeywords.add("console");
-    }
+    /**
+     * Files longer than this many characters are only checked at the top level
+     */
+    public int largeFileThreshold = 500000;
 
-    private final LocalQuickFix singleQuickFix = new SingleRequireStatementFix();
-    private final LocalQuickFix multipleQuickFix = new MultipleRequireStatementFix();
+    /**
+     * Whether large files that look minified or generated are skipped entirely
+     */
+    public boolean skipMinifiedFiles = true;
 
-    private Set<String> requireSet;
-    private Set<String> localVariableSet;
-    private Set<PsiElement> requireElementSet;
-    private Set<PsiElement> errorElementSet;
-    private PsiElement lastRequireElement;
-    private PsiElement root;
-    private Set<String> provideSet;
-    private boolean requireElementFound = false;
+    /**
+     * Whether files that never mention <code>goog.</code> are skipped without building their PSI
+     */
+    public boolean skipNonClosureFiles = true;
 
     @NotNull
     public String getDisplayName()
@@ -81,7 +75,7 @@ public class ValidateRequireStatementsInspection extends LocalInspectionTool
     @NotNull
     public String getShortName()
     {
-        return "ValidateRequireStatements";
+        return SHORT_NAME;
     }
 
 
@@ -89,495 +83,227 @@ public class ValidateRequireStatementsInspection extends LocalInspectionTool
     @Override
     public PsiElementVisitor buildVisitor(@NotNull final ProblemsHolder holder, boolean isOnTheFly)
     {
-        return new ValidateRequirementsPsiRecursiveElementVisitor(holder);
-    }
-
-    public boolean isEnabledByDefault()
-    {
-        return true;
-    }
-
-    private class ValidateRequirementsPsiRecursiveElementVisitor extends PsiElementVisitor
-    {
-        private ProblemsHolder holder;
-
-        public ValidateRequirementsPsiRecursiveElementVisitor(final ProblemsHolder holder)
+        // editor highlighting is done by ValidateRequireStatementsAnnotator in that mode, batch runs still use the visitor
+        if (isOnTheFly && ClosureProjectSettings.getInstance(holder.getProject()).useExternalAnnotator)
         {
-            this.holder = holder;
+            return PsiElementVisitor.EMPTY_VISITOR;
         }
+        return new ValidateRequirementsPsiRecursiveElementVisitor(holder, largeFileThreshold, skipMinifiedFiles, skipNonClosureFiles);
+    }
 
-        @Override
-        public void visitFile(final PsiFile file)
-        {
-            super.visitFile(file);
-
-            if (!file.getFileType().getDefaultExtension().equals("js"))
-            {
-                return;
-            }
-
-            requireSet = new HashSet<String>();
-            provideSet = new HashSet<String>();
-            localVariableSet = new HashSet<String>();
-            errorElementSet = new HashSet<PsiElement>();
-            requireElementFound = false;
-            requireElementSet = new TreeSet<PsiElement>(new Comparator<PsiElement>()
-            {
-                public int compare(final PsiElement o1, final PsiElement o2)
-                {
-                    String o1Text = o1.getText();
-                    String o2Text = o2.getText();
-
-                    int result;
-
-                    boolean o1Starts = o1Text.startsWith("goog.require(\"goog.") || o1Text.startsWith("goog.require('goog.");
-                    boolean o2Starts = o2Text.startsWith("goog.require(\"goog.") || o2Text.startsWith("goog.require('goog.");
-                    if ((o1Starts && o2Starts) || (!o1Starts && !o2Starts))
-                    {
-                        result = o2Text.compareTo(o1Text);
-                    }
-                    else if (o1Starts)
-                    {
-                        result = 1;
-                    }
-                    else
-                    {
-                        result = o2Text.compareTo(o1Text);
-                    }
-                    return result;
-                }
-            });
-
-
-            processElements(file);
-        }
+    @Nullable
+    @Override
+    public JComponent createOptionsPanel()
+    {
+        final JPanel panel = new JPanel(new VerticalFlowLayout(VerticalFlowLayout.TOP));
 
-        private void processElements(final PsiElement element)
+        final JPanel thresholdPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        final JFormattedTextField thresholdField = new JFormattedTextField(NumberFormat.getIntegerInstance());
+        thresholdField.setColumns(10);
+        thresholdField.setValue(largeFileThreshold);
+        thresholdField.addPropertyChangeListener("value", new PropertyChangeListener()
         {
-            final PsiElement[] children = element.getChildren();
-
-            for (PsiElement child : children)
+            public void propertyChange(final PropertyChangeEvent evt)
             {
-                PsiElement firstChild = child.getFirstChild();
-
-                if (root == null)
-                {
-                    root = child;
-                }
-
-                if (child.toString().equals("JSCallExpression") && firstChild != null && firstChild.toString().equals("JSReferenceExpression"))
-                {
-                    processJSCallExpression(child);
-                }
-                else if (child.toString().equals("PsiExpressionStatement"))
-                {
-                    processPsiExpressionStatement(child);
-                }
-                else if (child.toString().equals("JSReferenceExpression"))
-                {
-                    processReferenceExpression(child, child.getText());
-                }
-                else if (child.toString().equals("JSDocTagValue"))
-                {
-                    if (child.getText().contains("<"))
-                    {
-                        final String reference = child.getText().substring(child.getText().indexOf("<") + 1, child.getText().indexOf(">"));
-                        processReferenceExpression(child, reference);
-                    }
-                    else if (child.getText().contains("."))
-                    {
-                        final String reference = child.getText().replace("{", "").replace("}", "");
-                        processReferenceExpression(child, reference);
-                    }
-                }
-                else
+                final Object value = thresholdField.getValue();
+                if (value instanceof Number)
                 {
-                    if (child.toString().equals("JSLocalVariable"))
-                    {
-                        processVarStatement(child);
-                    }
-                    if (child.toString().equals("JSVariable"))
-                    {
-                        processVarStatement(child);
-                    }
-                    if (child.toString().equals("JSParameter"))
-                    {
-                        processVarStatement(child);
-                    }
-                    processElements(child);
+                    largeFileThreshold = ((Number) value).intValue();
                 }
             }
-        }
+        });
+        thresholdPanel.add(new JLabel("Only check top level references in files larger than (characters): "));
+        thresholdPanel.add(thresholdField);
+        panel.add(thresholdPanel);
 
-        private void processPsiExpressionStatement(PsiElement element)
+        final JCheckBox skipMinifiedCheckBox = new JCheckBox("Skip large minified or generated files", skipMinifiedFiles);
+        skipMinifiedCheckBox.addItemListener(new ItemListener()
         {
-            boolean requireStatement = false;
-
-            final PsiElement firstChild = element.getFirstChild();
-
-            if (firstChild == null)
-            {
-                return;
-            }
-
-            for (PsiElement child : firstChild.getChildren())
+            public void itemStateChanged(final ItemEvent e)
             {
-                if (child.toString().startsWith("PsiReferenceExpression") && child.getText().equals("goog.require"))
-                {
-                    requireStatement = true;
-                }
-
-                if (requireStatement)
-                {
-                    if (child.toString().startsWith("PsiExpressionList"))
-                    {
-                        for (PsiElement argument : child.getChildren())
-                        {
-                            if (argument.toString().startsWith("PsiLiteralExpression"))
-                            {
-                                requireSet.add(removeQuotes(argument.getText()));
-                                lastRequireElement = element.getParent();
-                                requireElementSet.add(element.getParent());
-                                requireElementFound = true;
-                            }
-                        }
-                    }
-                }
+                skipMinifiedFiles = skipMinifiedCheckBox.isSelected();
             }
-        }
+        });
+        panel.add(skipMinifiedCheckBox);
 
-        private void processJSCallExpression(final PsiElement element)
+        final JCheckBox skipNonClosureCheckBox = new JCheckBox("Skip files that do not use goog.*", skipNonClosureFiles);
+        skipNonClosureCheckBox.addItemListener(new ItemListener()
         {
-            boolean requireStatement = false;
-            boolean provideStatement = false;
-
-            for (PsiElement child : element.getChildren())
+            public void itemStateChanged(final ItemEvent e)
             {
-                if (child.toString().equals("JSReferenceExpression") && child.getText().equals("goog.require"))
-                {
-                    requireStatement = true;
-                }
-
-                if (child.toString().equals("JSReferenceExpression") && child.getText().equals("goog.provide"))
-                {
-                    provideStatement = true;
-                }
-
-                if (requireStatement)
-                {
-                    if (child.toString().equals("JSArgumentList"))
-                    {
-                        for (PsiElement argument : child.getChildren())
-                        {
-                            if (argument.toString().equals("JSLiteralExpression"))
-                            {
-                                String replace = removeQuotes(argument.getText());
-                                requireSet.add(replace);
-                                lastRequireElement = element.getParent();
-                                requireElementSet.add(element.getParent());
-                                requireElementFound = true;
-                            }
-                        }
-                    }
-                }
-
-                if (provideStatement)
-                {
-                    if (child.toString().equals("JSArgumentList"))
-                    {
-                        for (PsiElement argument : child.getChildren())
-                        {
-                            if (argument.toString().equals("JSLiteralExpression"))
-                            {
-                                provideSet.add(removeQuotes(argument.getText()));
-                                if (!requireElementFound)
-                                {
-                                    lastRequireElement = element.getParent();
-                                }
-                            }
-                        }
-                    }
-                }
-
-                if (!requireStatement && !provideStatement)
-                {
-                    if (child.toString().equals("JSReferenceExpression"))
-                    {
-                        PsiElement firstChild = child.getFirstChild();
-
-                        if (firstChild != null && firstChild.toString().equals("JSCallExpression"))
-                        {
-                            processJSCallExpression(firstChild);
-                        }
-                        else
-                        {
-                            processReferenceExpression(child, child.getText());
-                        }
-
-                    }
-                    else
-                    {
-                        processElements(child);
-                    }
-                }
+                skipNonClosureFiles = skipNonClosureCheckBox.isSelected();
             }
-        }
+        });
+        panel.add(skipNonClosureCheckBox);
 
-        /**
-         * removes both single and double quotes
-         *
-         * @param text string text
-         * @return
-         */
-        private String removeQuotes(String text)
-        {
-            return text.replaceAll("\"|'", "");
-        }
-
-        private void processReferenceExpression(final PsiElement element, final String reference)
-        {
-            boolean localVar;
-            boolean allowedKeyword;
-            boolean provideKeyword;
-            boolean includeLastElement;
-
-            int index = reference.lastIndexOf(".");
-
-            if (index != -1)
-            {
-                String definition = reference.substring(0, index);
-                final String identifier = reference.substring(index + 1);
-
-                Matcher matcher = CONSTANT_PATTERN.matcher(identifier);
-                includeLastElement = !matcher.matches();
-
-                if (includeLastElement)
-                {
-                    //Don't include method calls
-                    includeLastElement = !element.getParent().toString().equals("JSCallExpression");
-                }
-
-                if (includeLastElement)
-                {
-                    matcher = CLASS_PATTERN.matcher(definition);
-                    includeLastElement = !matcher.matches();
-                }
-
-                if (includeLastElement)
-                {
-                    String[] elements = reference.split("\\.");
-
-                    boolean classFound = false;
-
-                    for (String currentElement : elements)
-                    {
-                        matcher = CLASS_PATTERN.matcher(currentElement);
-                        classFound = matcher.matches();
-                        if (classFound)
-                        {
-                            break;
-                        }
-                    }
-
-                    if (classFound)
-                    {
-                        matcher = CLASS_PATTERN.matcher(identifier);
-                        includeLastElement = matcher.matches();
-                    }
-                }
-
-                PsiElement elementToTest = null;
-
-                if (includeLastElement)
-                {
-                    definition = reference;
-                    elementToTest = element;
-
-                    if (definition.contains(".") && !definition.startsWith("this") && !definition.contains(".prototype"))
-                    {
-                        String firstElement = definition.substring(0, definition.indexOf("."));
+        return panel;
+    }
 
-                        if (!shouldHighlight(firstElement) && !allowedKeywords.contains(firstElement))
-                        {
-                            return;
-                        }
+    public boolean isEnabledByDefault()
+    {
+        return true;
+    }
 
-                    }
-                }
-                else
-                {
-                    if (definition.contains(".") && !definition.startsWith("this") && !definition.contains(".prototype"))
-                    {
-                        PsiElement firstChild = element.getFirstChild();
-                        if (firstChild != null && firstChild.toString().equals("JSReferenceExpression"))
-                        {
-                            processReferenceExpression(firstChild, firstChild.getText());
-                        }
-                    }
-                    else
-                    {
-                        elementToTest = element.getFirstChild();
-                    }
-                }
+    /**
+     * Returns the instance of this inspection configured in the current profile.
+     *
+     * @param file file the options apply to
+     * @return the configured instance, or one with the default options if the profile has none
+     */
+    @NotNull
+    static ValidateRequireStatementsInspection getOptions(@NotNull final PsiFile file)
+    {
+        final InspectionProfileImpl profile = InspectionProjectProfileManager.getInstance(file.getProject()).getCurrentProfile();
+        final InspectionProfileEntry tool = profile.getUnwrappedTool(SHORT_NAME, file);
 
-                if (shouldHighlight(definition) && elementToTest != null)
-                {
-                    highlightElement(elementToTest);
-                }
-            }
-        }
+        return tool instanceof ValidateRequireStatementsInspection ? (ValidateRequireStatementsInspection) tool
+                : new ValidateRequireStatementsInspection();
+    }
 
-        private boolean shouldHighlight(final String definition)
+    /**
+     * Whether the options of this instance exclude a file from the closure checks, decided from the text alone.
+     *
+     * @param text file text
+     * @return true for files not using closure, or large minified files when those are skipped
+     */
+    boolean isSkipped(@NotNull final CharSequence text)
+    {
+        if (skipNonClosureFiles && !ClosureFileFilter.usesClosure(text))
         {
-            final boolean localVar;
-            final boolean allowedKeyword;
-            final boolean provideKeyword;
-            final boolean imported;
-
-            localVar = localVariableSet.contains(definition);
-            allowedKeyword = allowedKeywords.contains(definition);
-            provideKeyword = provideSet.contains(definition);
-            imported = requireSet.contains(definition);
-
-            return !(allowedKeyword || localVar || provideKeyword || imported || definition.startsWith("this") || definition.contains(".prototype"));
+            return true;
         }
+        return text.length() > largeFileThreshold && skipMinifiedFiles && ClosureFileFilter.isMinified(text);
+    }
 
-        private void processVarStatement(final PsiElement element)
-        {
-            String localVar = element.getText();
-            final int index = element.getText().indexOf(" ");
-            if (index != -1)
-            {
-                localVar = element.getText().substring(0, index);
-            }
-
-            localVariableSet.add(localVar);
-        }
+    /**
+     * Validates a file with the options of this instance, like the inspection does: skipped files have no
+     * session and only the top level statements of files above the large file threshold are analysed.
+     *
+     * @param file javascript file
+     * @return the cached validation session, null if the options skip the file
+     */
+    @Nullable
+    ValidationSession getSession(@NotNull final PsiFile file)
+    {
+        final CharSequence text = file.getViewProvider().getContents();
 
-        private void highlightElement(@NotNull PsiElement element)
+        if (isSkipped(text))
         {
-            errorElementSet.add(element);
-            holder.registerProblem(element, "Reference needs goog.require statement", ProblemHighlightType.ERROR, singleQuickFix);
+            return null;
         }
+        return ValidationSession.getSession(file, text.length() > largeFileThreshold);
+    }
 
-        private void dumpElement(PsiElement element, String space, boolean dumpChildren)
-        {
-            System.out.println(space + element + "::" + element.getText());
-            if (dumpChildren)
-            {
-                for (PsiElement child : element.getChildren())
-                {
-                    dumpElement(child, space + "    ", dumpChildren);
-                }
-            }
-        }
+    @NotNull
+    static String getNotProvidedMessage(@NotNull final String namespace)
+    {
+        return "Namespace '" + namespace + "' is not provided by any goog.provide statement";
     }
 
-    private class SingleRequireStatementFix implements LocalQuickFix
+    private static class ValidateRequirementsPsiRecursiveElementVisitor extends PsiElementVisitor
     {
-        @NotNull
-        public String getName()
+        private final LocalQuickFix removeUnusedRequireFix = new RemoveUnusedRequireFix();
+        private final LocalQuickFix multipleRequireStatementFix = new MultipleRequireStatementFix();
+        private final ProblemsHolder holder;
+        private final int largeFileThreshold;
+        private final boolean skipMinifiedFiles;
+        private final boolean skipNonClosureFiles;
+
+        public ValidateRequirementsPsiRecursiveElementVisitor(final ProblemsHolder holder, final int largeFileThreshold,
+                                                              final boolean skipMinifiedFiles, final boolean skipNonClosureFiles)
         {
-            return "Add goog.require statement";
+            this.holder = holder;
+            this.largeFileThreshold = largeFileThreshold;
+            this.skipMinifiedFiles = skipMinifiedFiles;
+            this.skipNonClosureFiles = skipNonClosureFiles;
         }
 
-
-        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor)
+        @Override
+        public void visitFile(final PsiFile file)
         {
+            super.visitFile(file);
 
-            PsiElement element = descriptor.getPsiElement();
-            PsiElementFactory factory = PsiElementFactory.SERVICE.getInstance(element.getProject());
-
-            StringBuilder statement = new StringBuilder("goog.require(\"");
-            String text = element.getText().replace("{", "").replace("}", "");
-            if (text.contains("<"))
+            if (!file.getFileType().getDefaultExtension().equals("js"))
             {
-                text = text.substring(text.indexOf("<") + 1, text.indexOf(">"));
+                return;
             }
-            statement.append(text);
-            statement.append("\");");
 
-            final PsiElement newElement = factory.createStatementFromText(statement.toString(), null);
+            // the view provider text is available without building the PSI tree
+            final CharSequence text = file.getViewProvider().getContents();
 
-            requireElementSet.add(newElement);
-
-            for (PsiElement requireElement : requireElementSet)
+            if (skipNonClosureFiles && !ClosureFileFilter.usesClosure(text))
             {
-                if (lastRequireElement != null)
-                {
-                    lastRequireElement.getParent().addAfter(requireElement, lastRequireElement);
-                }
-                else
-                {
-                    root.getParent().addBefore(requireElement, root);
-                }
+                return;
             }
 
-            requireElementSet.remove(newElement);
+            final boolean largeFile = text.length() > largeFileThreshold;
 
-            for (PsiElement requireElement : requireElementSet)
+            if (largeFile && skipMinifiedFiles && ClosureFileFilter.isMinified(text))
             {
-                requireElement.delete();
+                return;
             }
-        }
 
-        @NotNull
-        public String getFamilyName()
-        {
-            return getName();
-        }
-    }
+            final long start = System.nanoTime();
+            final int problemsBefore = holder.getResultCount();
 
-    private class MultipleRequireStatementFix implements LocalQuickFix
-    {
-        @NotNull
-        public String getName()
-        {
-            return "Fix all goog.require statements";
-        }
-
-
-        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor)
-        {
-            PsiElementFactory factory = PsiElementFactory.SERVICE.getInstance(project);
+            final ValidationSession session = ValidationSession.getSession(file, largeFile);
+            final boolean multipleErrors = session.errorRanges.size() > 1;
 
-            Set<PsiElement> newElements = new HashSet<PsiElement>();
-
-            for (PsiElement errorElement : errorElementSet)
+            for (Map.Entry<TextRange, String> error : session.errorRanges.entrySet())
             {
-                StringBuilder statement = new StringBuilder("goog.require(\"");
-                statement.append(errorElement.getText().replace("{", "").replace("}", ""));
-                statement.append("\");");
-
-
-                PsiElement newElement = factory.createStatementFromText(statement.toString(), null);
-
-                newElements.add(newElement);
-                requireElementSet.add(newElement);
+                final PsiElement element = ValidationSession.findProblemElement(file, error.getKey());
+                if (element != null)
+                {
+                    final TextRange rangeInElement = error.getKey().shiftRight(-element.getTextRange().getStartOffset());
+                    highlightElement(element, rangeInElement, error.getValue(), multipleErrors);
+                }
             }
 
-            for (PsiElement requireElement : requireElementSet)
+            for (ValidationSession.NamespaceStatement require : session.requireStatements)
             {
-                lastRequireElement.getParent().addAfter(requireElement, lastRequireElement);
+                if (session.unusedRequires.contains(require.namespace))
+                {
+                    final PsiElement statement = ValidationSession.findElement(file, require.range);
+                    if (statement != null)
+                    {
+                        holder.registerProblem(statement, UNUSED_REQUIRE_MESSAGE,
+                                ProblemHighlightType.LIKE_UNUSED_SYMBOL, removeUnusedRequireFix);
+                    }
+                }
             }
 
-            for (PsiElement newElement : newElements)
+            final VirtualFile virtualFile = file.getVirtualFile();
+            if (virtualFile != null)
             {
-                requireElementSet.remove(newElement);
+                // concurrent runs on the same session must not both report its collection cost
+                final boolean cached = !session.metricsRecorded.compareAndSet(false, true);
+                ClosureInspectionMetrics.getInstance().record(virtualFile.getPath(), System.nanoTime() - start, session,
+                        cached, holder.getResultCount() - problemsBefore);
             }
+        }
 
+        private void highlightElement(@NotNull PsiElement element, @NotNull TextRange rangeInElement, @NotNull String namespace,
+                                      boolean multipleErrors)
+        {
+            if (ClosureNamespaceIndex.isProvided(element.getProject(), namespace))
+            {
+                final LocalQuickFix singleRequireStatementFix = new SingleRequireStatementFix(namespace);
 
-            for (PsiElement requireElement : requireElementSet)
+                if (multipleErrors)
+                {
+                    holder.registerProblem(element, MISSING_REQUIRE_MESSAGE, ProblemHighlightType.ERROR, rangeInElement,
+                            singleRequireStatementFix, multipleRequireStatementFix);
+                }
+                else
+                {
+                    holder.registerProblem(element, MISSING_REQUIRE_MESSAGE, ProblemHighlightType.ERROR, rangeInElement,
+                            singleRequireStatementFix);
+                }
+            }
+            else
             {
-                requireElement.delete();
+                holder.registerProblem(element, getNotProvidedMessage(namespace), ProblemHighlightType.ERROR, rangeInElement);
             }
-
-        }
-
-        @NotNull
-        public String getFamilyName()
-        {
-            return getName();
         }
     }
 
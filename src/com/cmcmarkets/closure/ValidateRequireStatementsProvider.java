@@ -14,6 +14,6 @@ public class ValidateRequireStatementsProvider implements InspectionToolProvider
 {
     public Class[] getInspectionClasses()
     {
-        return new Class[]{ValidateRequireStatementsInspection.class};
+        return new Class[]{ValidateRequireStatementsInspection.class, ClosureDependencyInspection.class};
     }
 }
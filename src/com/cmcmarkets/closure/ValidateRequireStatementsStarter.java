@@ -0,0 +1,503 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.lang.javascript.JavascriptLanguage;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarterEx;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Command line entry point validating the goog.require statements of a whole source tree without opening a
+ * project, for example on a build server:
+ * <pre>
+ * idea closure-validate &lt;source root&gt; [--format=text|json] [--externs=&lt;file or directory&gt;]...
+ * </pre>
+ * The provided namespaces of all files are collected first, then the files are validated on a fork/join pool
+ * with the same rules as the inspection. Problems are printed as soon as a file is done, either as
+ * <code>path:line:column: message</code> or as one JSON object per line. A file that cannot be read or
+ * validated is reported on the error stream and the run continues with the other files. The exit code is 1 if
+ * any problem was found and 2 for invalid arguments, unreadable or failed files and unexpected errors.
+ */
+public class ValidateRequireStatementsStarter extends ApplicationStarterEx
+{
+    private static final String COMMAND_NAME = "closure-validate";
+    private static final String FORMAT_OPTION = "--format=";
+    private static final String EXTERNS_OPTION = "--externs=";
+
+    /**
+     * Files handled by one fork/join task without splitting further
+     */
+    private static final int FILES_PER_TASK = 16;
+
+    private final ValidateRequireStatementsInspection defaults = new ValidateRequireStatementsInspection();
+    private ClosureGlobals globals = ClosureGlobals.BUILT_IN_GLOBALS;
+
+    public String getCommandName()
+    {
+        return COMMAND_NAME;
+    }
+
+    public boolean isHeadless()
+    {
+        return true;
+    }
+
+    public void premain(final String[] args)
+    {
+    }
+
+    public void main(final String[] args)
+    {
+        File sourceRoot = null;
+        boolean json = false;
+        final List<File> externs = new ArrayList<File>();
+
+        for (int i = 1; i < args.length; i++)
+        {
+            if (args[i].startsWith(FORMAT_OPTION))
+            {
+                final String format = args[i].substring(FORMAT_OPTION.length());
+                if (!"text".equals(format) && !"json".equals(format))
+                {
+                    usage("Unknown format: " + format);
+                }
+                json = "json".equals(format);
+            }
+            else if (args[i].startsWith(EXTERNS_OPTION))
+            {
+                final File path = new File(args[i].substring(EXTERNS_OPTION.length()));
+                if (!path.exists())
+                {
+                    usage("Externs not found: " + path);
+                }
+                collectFiles(path, externs);
+            }
+            else if (sourceRoot == null)
+            {
+                sourceRoot = new File(args[i]);
+            }
+            else
+            {
+                usage("Unexpected argument: " + args[i]);
+            }
+        }
+
+        if (sourceRoot == null || !sourceRoot.isDirectory())
+        {
+            usage(sourceRoot == null ? "Missing source root" : "Not a directory: " + sourceRoot);
+        }
+
+        if (!externs.isEmpty())
+        {
+            final List<String> externsTexts = new ArrayList<String>();
+            for (File file : externs)
+            {
+                try
+                {
+                    externsTexts.add(loadText(file));
+                }
+                catch (IOException e)
+                {
+                    usage("Could not read externs " + file + ": " + e.getMessage());
+                }
+            }
+            globals = ClosureGlobals.create(externsTexts);
+        }
+
+        final List<File> files = new ArrayList<File>();
+        collectFiles(sourceRoot, files);
+
+        final Reporter reporter = new Reporter(System.out, json);
+        final ForkJoinPool pool = new ForkJoinPool();
+
+        try
+        {
+            final Set<String> provided = Collections.synchronizedSet(new HashSet<String>());
+            pool.invoke(new ProvideTask(files, 0, files.size(), provided, reporter));
+            pool.invoke(new ValidateTask(files, 0, files.size(), new HashSet<String>(provided), reporter));
+        }
+        catch (RuntimeException e)
+        {
+            // failures of single files are reported by the tasks, anything else ends the run
+            reporter.close();
+            System.err.println("Validation failed:");
+            e.printStackTrace();
+            System.exit(2);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        reporter.close();
+        System.err.println(reporter.getProblemCount() + " problem(s) in " + files.size() + " file(s)");
+
+        if (reporter.getFailureCount() > 0)
+        {
+            System.err.println(reporter.getFailureCount() + " file(s) could not be validated");
+            System.exit(2);
+        }
+        System.exit(reporter.getProblemCount() > 0 ? 1 : 0);
+    }
+
+    private static void usage(final String error)
+    {
+        System.err.println(error);
+        System.err.println("Usage: " + COMMAND_NAME + " <source root> [--format=text|json] [--externs=<file or directory>]...");
+        System.exit(2);
+    }
+
+    private static void collectFiles(final File directory, final List<File> files)
+    {
+        if (directory.isFile())
+        {
+            files.add(directory);
+            return;
+        }
+
+        final File[] children = directory.listFiles();
+
+        if (children == null)
+        {
+            return;
+        }
+
+        for (File child : children)
+        {
+            if (child.isDirectory())
+            {
+                collectFiles(child, files);
+            }
+            else if (FileUtil.extensionEquals(child.getName(), "js"))
+            {
+                files.add(child);
+            }
+        }
+    }
+
+    private static String loadText(final File file) throws IOException
+    {
+        return FileUtil.loadFile(file, "UTF-8");
+    }
+
+    /**
+     * Validates one file and reports its problems.
+     */
+    private void validate(final File file, final Set<String> provided, final Reporter reporter) throws IOException
+    {
+        final String text = loadText(file);
+
+        if (defaults.skipNonClosureFiles && !ClosureFileFilter.usesClosure(text))
+        {
+            return;
+        }
+
+        final boolean largeFile = text.length() > defaults.largeFileThreshold;
+
+        if (largeFile && defaults.skipMinifiedFiles && ClosureFileFilter.isMinified(text))
+        {
+            return;
+        }
+
+        final List<Problem> problems = ApplicationManager.getApplication().runReadAction(new Computable<List<Problem>>()
+        {
+            public List<Problem> compute()
+            {
+                final Project project = ProjectManager.getInstance().getDefaultProject();
+                final PsiFile psiFile = PsiFileFactory.getInstance(project).createFileFromText(file.getName(), JavascriptLanguage.INSTANCE, text);
+                final ValidationSession session = new ValidationSession();
+                new RequireStatementsCollector(session, globals, largeFile).collect(psiFile);
+
+                final List<Problem> result = new ArrayList<Problem>();
+
+                for (Map.Entry<TextRange, String> error : session.errorRanges.entrySet())
+                {
+                    final String namespace = error.getValue();
+                    result.add(new Problem(error.getKey().getStartOffset(), provided.contains(namespace)
+                            ? ValidateRequireStatementsInspection.MISSING_REQUIRE_MESSAGE + ": " + namespace
+                            : ValidateRequireStatementsInspection.getNotProvidedMessage(namespace)));
+                }
+
+                for (ValidationSession.NamespaceStatement require : session.requireStatements)
+                {
+                    if (session.unusedRequires.contains(require.namespace))
+                    {
+                        result.add(new Problem(require.range.getStartOffset(),
+                                ValidateRequireStatementsInspection.UNUSED_REQUIRE_MESSAGE + ": " + require.namespace));
+                    }
+                }
+                return result;
+            }
+        });
+
+        reporter.report(file, text, problems);
+    }
+
+    private static final class ProvideTask extends RecursiveAction
+    {
+        private final List<File> files;
+        private final int from;
+        private final int to;
+        private final Set<String> provided;
+        private final Reporter reporter;
+
+        ProvideTask(final List<File> files, final int from, final int to, final Set<String> provided, final Reporter reporter)
+        {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.provided = provided;
+            this.reporter = reporter;
+        }
+
+        protected void compute()
+        {
+            if (to - from > FILES_PER_TASK)
+            {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new ProvideTask(files, from, middle, provided, reporter),
+                        new ProvideTask(files, middle, to, provided, reporter));
+                return;
+            }
+
+            for (int i = from; i < to; i++)
+            {
+                try
+                {
+                    provided.addAll(ClosureDeclarations.findProvides(loadText(files.get(i))));
+                }
+                catch (IOException e)
+                {
+                    reporter.failed(files.get(i), e);
+                }
+                catch (RuntimeException e)
+                {
+                    reporter.failed(files.get(i), e);
+                }
+            }
+        }
+    }
+
+    private final class ValidateTask extends RecursiveAction
+    {
+        private final List<File> files;
+        private final int from;
+        private final int to;
+        private final Set<String> provided;
+        private final Reporter reporter;
+
+        ValidateTask(final List<File> files, final int from, final int to, final Set<String> provided, final Reporter reporter)
+        {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.provided = provided;
+            this.reporter = reporter;
+        }
+
+        protected void compute()
+        {
+            if (to - from > FILES_PER_TASK)
+            {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new ValidateTask(files, from, middle, provided, reporter),
+                        new ValidateTask(files, middle, to, provided, reporter));
+                return;
+            }
+
+            for (int i = from; i < to; i++)
+            {
+                // one broken file must not end the whole run
+                try
+                {
+                    validate(files.get(i), provided, reporter);
+                }
+                catch (IOException e)
+                {
+                    reporter.failed(files.get(i), e);
+                }
+                catch (RuntimeException e)
+                {
+                    reporter.failed(files.get(i), e);
+                }
+            }
+        }
+    }
+
+    private static final class Problem
+    {
+        final int offset;
+        final String message;
+
+        Problem(final int offset, final String message)
+        {
+            this.offset = offset;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Prints the problems of each file in one block so the output of concurrently validated files never
+     * interleaves.
+     */
+    private static final class Reporter
+    {
+        private final PrintStream out;
+        private final boolean json;
+        private final AtomicInteger problemCount = new AtomicInteger();
+        private final Set<File> failedFiles = Collections.synchronizedSet(new HashSet<File>());
+
+        Reporter(final PrintStream out, final boolean json)
+        {
+            this.out = out;
+            this.json = json;
+        }
+
+        void report(final File file, final CharSequence text, final List<Problem> problems)
+        {
+            if (problems.isEmpty())
+            {
+                return;
+            }
+
+            problemCount.addAndGet(problems.size());
+
+            final String path = FileUtil.toSystemIndependentName(file.getPath());
+            final StringBuilder block = new StringBuilder();
+
+            Collections.sort(problems, new Comparator<Problem>()
+            {
+                public int compare(final Problem o1, final Problem o2)
+                {
+                    return o1.offset - o2.offset;
+                }
+            });
+
+            int line = 1;
+            int lineStart = 0;
+            int scanned = 0;
+
+            for (Problem problem : problems)
+            {
+                for (; scanned < problem.offset; scanned++)
+                {
+                    if (text.charAt(scanned) == '\n')
+                    {
+                        line++;
+                        lineStart = scanned + 1;
+                    }
+                }
+
+                final int column = problem.offset - lineStart + 1;
+
+                if (json)
+                {
+                    block.append("{\"file\":");
+                    appendJsonString(block, path);
+                    block.append(",\"line\":").append(line).append(",\"column\":").append(column).append(",\"message\":");
+                    appendJsonString(block, problem.message);
+                    block.append("}\n");
+                }
+                else
+                {
+                    block.append(path).append(':').append(line).append(':').append(column).append(": ")
+                            .append(problem.message).append('\n');
+                }
+            }
+
+            synchronized (out)
+            {
+                out.print(block);
+                out.flush();
+            }
+        }
+
+        /**
+         * Reports a file that could not be read or validated, on the error stream.
+         */
+        void failed(final File file, final Exception e)
+        {
+            if (!failedFiles.add(file))
+            {
+                return;
+            }
+
+            final String message = e instanceof IOException ? "could not be read: " + e.getMessage() : "validation failed: " + e;
+
+            synchronized (System.err)
+            {
+                System.err.println(FileUtil.toSystemIndependentName(file.getPath()) + ": " + message);
+
+                if (!(e instanceof IOException))
+                {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        int getProblemCount()
+        {
+            return problemCount.get();
+        }
+
+        int getFailureCount()
+        {
+            return failedFiles.size();
+        }
+
+        void close()
+        {
+            out.flush();
+        }
+
+        private static void appendJsonString(final StringBuilder builder, final String value)
+        {
+            builder.append('"');
+
+            for (int i = 0; i < value.length(); i++)
+            {
+                final char c = value.charAt(i);
+
+                if (c == '"' || c == '\\')
+                {
+                    builder.append('\\').append(c);
+                }
+                else if (c < 0x20)
+                {
+                    builder.append(String.format("\\u%04x", (int) c));
+                }
+                else
+                {
+                    builder.append(c);
+                }
+            }
+            builder.append('"');
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * State collected while validating a single file. A new session is created for every visited file, so
+ * concurrent inspection passes never share anything but the immutable inspection instance. Sessions are
+ * cached on the file and recomputed only after the file has been modified.
+ * <p/>
+ * A session only holds text ranges, never PSI elements, so a cached session does not keep a reparsed tree or
+ * the tree of a closed file reachable. Elements are looked up again with {@link #findElement} when needed.
+ */
+class ValidationSession
+{
+    final Set<String> requireSet = new HashSet<String>();
+    final Set<String> provideSet = new HashSet<String>();
+    final Set<String> localVariableSet = new HashSet<String>();
+    final List<NamespaceStatement> requireStatements = new ArrayList<NamespaceStatement>();
+    final List<NamespaceStatement> provideStatements = new ArrayList<NamespaceStatement>();
+    /**
+     * Ranges of the references needing a goog.require, mapped to the namespace to require. The range of a type
+     * name in a JSDoc comment covers the name only, not a whole element.
+     */
+    final Map<TextRange, String> errorRanges = new LinkedHashMap<TextRange, String>();
+    /**
+     * Required namespaces no reference in the file uses, only filled when the whole file was visited
+     */
+    final Set<String> unusedRequires = new HashSet<String>();
+    /**
+     * End of the last top level goog.require, or of the last top level goog.provide if there is no such require,
+     * -1 if there is neither
+     */
+    int lastRequireOffset = -1;
+    /**
+     * Start of the first element of the file, -1 for an empty file
+     */
+    int rootOffset = -1;
+    boolean requireElementFound = false;
+
+    /**
+     * Cost of collecting this session, reported by {@link ClosureInspectionMetrics}
+     */
+    long collectNanos;
+    int nodesVisited;
+    int referencesClassified;
+    int classifierCalls;
+
+    /**
+     * Set by the first inspection run reporting from this session, later runs only looked it up
+     */
+    final AtomicBoolean metricsRecorded = new AtomicBoolean();
+
+    private static final Key<CachedValue<ValidationSession>> FULL_SESSION_KEY = Key.create("closure.validation.session");
+    private static final Key<CachedValue<ValidationSession>> TOP_LEVEL_SESSION_KEY = Key.create("closure.validation.session.topLevel");
+
+    /**
+     * Returns the session for the file, running the collector only if the file changed since the last call.
+     *
+     * @param file javascript file
+     * @return collected session
+     */
+    @NotNull
+    static ValidationSession getSession(@NotNull final PsiFile file)
+    {
+        return getSession(file, false);
+    }
+
+    /**
+     * Returns the session for the file, running the collector only if the file changed since the last call.
+     *
+     * @param file         javascript file
+     * @param topLevelOnly if true function bodies are skipped, used for large files
+     * @return collected session
+     */
+    @NotNull
+    static ValidationSession getSession(@NotNull final PsiFile file, final boolean topLevelOnly)
+    {
+        return CachedValuesManager.getCachedValue(file, topLevelOnly ? TOP_LEVEL_SESSION_KEY : FULL_SESSION_KEY,
+                new CachedValueProvider<ValidationSession>()
+                {
+                    public Result<ValidationSession> compute()
+                    {
+                        final ValidationSession session = new ValidationSession();
+                        final long start = System.nanoTime();
+                        new RequireStatementsCollector(session, ClosureGlobals.getInstance(file.getProject()), topLevelOnly).collect(file);
+                        session.collectNanos = System.nanoTime() - start;
+                        return Result.create(session, file, ClosureGlobals.getModificationTracker(file.getProject()));
+                    }
+                });
+    }
+
+    /**
+     * Whether a dotted name refers to something of the file itself rather than a closure namespace, with the
+     * same rules the collector uses: its first segment is a variable or parameter declared in the file, or it
+     * goes through <code>this</code> or a prototype.
+     *
+     * @param name dotted name
+     * @return true if the name must not be treated as a namespace
+     */
+    boolean isLocalName(@NotNull final String name)
+    {
+        final int dot = name.indexOf('.');
+        final String root = dot == -1 ? name : name.substring(0, dot);
+
+        return localVariableSet.contains(root) || name.startsWith("this") || name.contains(".prototype");
+    }
+
+    /**
+     * Collects only the top level goog.require and goog.provide statements of the file, for callers that need the
+     * require block right after an edit without validating the file. Not cached.
+     *
+     * @param file javascript file
+     * @return session without references, errors and local variables
+     */
+    @NotNull
+    static ValidationSession getDeclarations(@NotNull final PsiFile file)
+    {
+        final ValidationSession session = new ValidationSession();
+        new RequireStatementsCollector(session, ClosureGlobals.BUILT_IN_GLOBALS, true).collectDeclarations(file);
+        return session;
+    }
+
+    /**
+     * Finds the element a range was recorded for, the outermost element if several share the range.
+     *
+     * @param file  file the session was collected from
+     * @param range recorded range
+     * @return the element, or null if no element covers exactly the range
+     */
+    @Nullable
+    static PsiElement findElement(@NotNull final PsiFile file, @NotNull final TextRange range)
+    {
+        PsiElement element = file.findElementAt(range.getStartOffset());
+
+        while (element != null && element != file && !range.equals(element.getTextRange()))
+        {
+            element = element.getParent();
+        }
+
+        if (element == null || element == file)
+        {
+            return null;
+        }
+
+        while (element.getParent() != file && range.equals(element.getParent().getTextRange()))
+        {
+            element = element.getParent();
+        }
+        return element;
+    }
+
+    /**
+     * Finds the element to report a recorded error range on.
+     *
+     * @param file  file the session was collected from
+     * @param range recorded range
+     * @return the element with exactly the range, else the innermost element containing it such as the JSDoc tag
+     * value of a type name, or null if the file changed
+     */
+    @Nullable
+    static PsiElement findProblemElement(@NotNull final PsiFile file, @NotNull final TextRange range)
+    {
+        final PsiElement element = findElement(file, range);
+
+        if (element != null)
+        {
+            return element;
+        }
+
+        PsiElement container = file.findElementAt(range.getStartOffset());
+
+        while (container != null && container != file && !container.getTextRange().contains(range))
+        {
+            container = container.getParent();
+        }
+        return container == file ? null : container;
+    }
+
+    /**
+     * A goog.require or goog.provide statement found in the file
+     */
+    static final class NamespaceStatement
+    {
+        final String namespace;
+        final TextRange range;
+        final String text;
+        /**
+         * Whether the statement is a direct child of the file rather than nested in a function or block
+         */
+        final boolean topLevel;
+
+        NamespaceStatement(@NotNull final String namespace, @NotNull final PsiElement statement)
+        {
+            this.namespace = namespace;
+            this.range = statement.getTextRange();
+            this.text = statement.getText();
+            this.topLevel = statement.getParent() instanceof PsiFile;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.cmcmarkets.closure;
+
+import java.util.Random;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Micro benchmark of the platform independent hot paths: {@link ReferenceClassifier} against the regular
+ * expressions it replaced, and {@link JSDocTypeParser} against the substring handling it replaced, with and
+ * without its cache. Run the main method with the test classpath; it prints nanoseconds and allocated bytes per
+ * operation for each variant. {@link CollectorBenchmark} measures the whole collector on generated files.
+ */
+public class ClassifierBenchmark
+{
+    private static final int REFERENCES = 4096;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 500;
+
+    /**
+     * Keeps results alive so the JIT cannot drop the benchmarked code
+     */
+    private static int sink;
+
+    public static void main(final String[] args)
+    {
+        final String[] references = ClosureTestData.generateReferences(new Random(42), REFERENCES);
+        final String[] types = ClosureTestData.generateTypes(new Random(43), REFERENCES);
+
+        run("classify, regex", references, new Operation()
+        {
+            public int run(final String reference)
+            {
+                return ClosureTestData.classifyWithRegex(reference);
+            }
+        });
+        run("classify, ReferenceClassifier", references, new Operation()
+        {
+            public int run(final String reference)
+            {
+                return ClosureTestData.classifyWithScanner(reference);
+            }
+        });
+        run("jsdoc, substring", types, new Operation()
+        {
+            public int run(final String type)
+            {
+                return ClosureTestData.parseWithSubstring(type).length();
+            }
+        });
+        run("jsdoc, JSDocTypeParser.scan", types, new Operation()
+        {
+            public int run(final String type)
+            {
+                return JSDocTypeParser.scan(type).size();
+            }
+        });
+        run("jsdoc, JSDocTypeParser.parse (cached)", types, new Operation()
+        {
+            public int run(final String type)
+            {
+                return JSDocTypeParser.parse(type).size();
+            }
+        });
+
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static void run(final String name, final String[] inputs, final Operation operation)
+    {
+        for (int round = 0; round < WARMUP_ROUNDS; round++)
+        {
+            for (String input : inputs)
+            {
+                sink += operation.run(input);
+            }
+        }
+
+        final long bytesBefore = ClosureTestData.allocatedBytes();
+        final long start = System.nanoTime();
+
+        for (int round = 0; round < MEASURED_ROUNDS; round++)
+        {
+            for (String input : inputs)
+            {
+                sink += operation.run(input);
+            }
+        }
+
+        final long nanos = System.nanoTime() - start;
+        final long bytes = ClosureTestData.allocatedBytes() - bytesBefore;
+        final long operations = (long) MEASURED_ROUNDS * inputs.length;
+
+        System.out.println(String.format("%-40s %8.1f ns/op %8.1f B/op", name, (double) nanos / operations,
+                (double) bytes / operations));
+    }
+
+    private interface Operation
+    {
+        int run(String input);
+    }
+}
@@ -0,0 +1,114 @@
+package com.cmcmarkets.closure;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ */
+public class ClosureGlobalsTest extends TestCase
+{
+    public void testBuiltIn()
+    {
+        assertTrue(ClosureGlobals.BUILT_IN_GLOBALS.contains("Math"));
+        assertTrue(ClosureGlobals.BUILT_IN_GLOBALS.contains("goog"));
+        assertTrue(ClosureGlobals.BUILT_IN_GLOBALS.contains("console"));
+        assertFalse(ClosureGlobals.BUILT_IN_GLOBALS.contains("Mat"));
+        assertFalse(ClosureGlobals.BUILT_IN_GLOBALS.contains("Maths"));
+        assertFalse(ClosureGlobals.BUILT_IN_GLOBALS.contains("goog.array"));
+        assertFalse(ClosureGlobals.BUILT_IN_GLOBALS.contains(""));
+    }
+
+    public void testExterns()
+    {
+        final ClosureGlobals globals = ClosureGlobals.create(Collections.singletonList(
+                "var jQuery;\n"
+                        + "function require(name) {}\n"
+                        + "  ext.ui.Widget = function() {};\n"
+                        + "ext.ui.Widget.prototype.show = function() {};\n"
+                        + "ext.VERSION;\n"
+                        + "    local = 1;\n"));
+
+        assertTrue(globals.contains("jQuery"));
+        assertTrue(globals.contains("require"));
+        assertTrue(globals.contains("ext"));
+        assertTrue(globals.contains("ext.ui"));
+        assertTrue(globals.contains("ext.ui.Widget"));
+        assertTrue(globals.contains("ext.VERSION"));
+        assertTrue(globals.contains("Math"));
+
+        assertFalse(globals.contains("ext.ui.Widget.prototype"));
+        assertFalse(globals.contains("ext.ui.Widget.prototype.show"));
+        assertFalse(globals.contains("ext.ui.Widget.show"));
+        assertFalse(globals.contains("ext.u"));
+        assertFalse(globals.contains("ext.ui."));
+        assertFalse(globals.contains("local"));
+    }
+
+    public void testSameNames()
+    {
+        final ClosureGlobals globals = ClosureGlobals.create(Collections.singletonList("var jQuery;\next.ui.Widget = 1;\n"));
+
+        assertTrue(globals.sameNames(ClosureGlobals.create(Collections.singletonList("ext.ui.Widget = 2;\nvar jQuery = {};\n"))));
+        assertFalse(globals.sameNames(ClosureGlobals.create(Collections.singletonList("var jQuery;\next.ui.Button = 1;\n"))));
+        assertFalse(globals.sameNames(ClosureGlobals.create(Collections.singletonList("var jQuery;\n"))));
+        assertFalse(globals.sameNames(ClosureGlobals.BUILT_IN_GLOBALS));
+        assertTrue(ClosureGlobals.BUILT_IN_GLOBALS.sameNames(ClosureGlobals.create(Collections.<String>emptyList())));
+    }
+
+    public void testSameAnswersAsSet()
+    {
+        final Random random = new Random(11);
+        final String[] segments = {"a", "b", "ab", "ba", "A", "Widget", "widget", "x_1", "$"};
+        final Set<String> declared = new HashSet<String>(Arrays.asList("Math", "Number", "String", "Boolean", "Array",
+                "Blob", "Date", "Object", "RegEx", "Text", "goog", "JSON", "...*", "console"));
+        final StringBuilder externs = new StringBuilder();
+
+        for (int i = 0; i < 500; i++)
+        {
+            final String name = randomName(random, segments);
+            externs.append(name).append(" = {};\n");
+
+            for (int dot = name.indexOf('.'); dot != -1; dot = name.indexOf('.', dot + 1))
+            {
+                declared.add(name.substring(0, dot));
+            }
+            declared.add(name);
+        }
+
+        final ClosureGlobals globals = ClosureGlobals.create(Collections.singletonList(externs));
+
+        for (String name : declared)
+        {
+            assertTrue(name, globals.contains(name));
+        }
+
+        for (int i = 0; i < 5000; i++)
+        {
+            final String name = randomName(random, segments);
+            assertEquals(name, declared.contains(name), globals.contains(name));
+        }
+    }
+
+    private static String randomName(final Random random, final String[] segments)
+    {
+        final StringBuilder name = new StringBuilder(segments[random.nextInt(segments.length)]);
+        final int length = 1 + random.nextInt(4);
+
+        for (int i = 0; i < length; i++)
+        {
+            name.append('.').append(segments[random.nextInt(segments.length)]);
+        }
+        return name.toString();
+    }
+}
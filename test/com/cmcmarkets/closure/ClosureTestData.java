@@ -0,0 +1,193 @@
+package com.cmcmarkets.closure;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Generated inputs shared by the tests and benchmarks, and the implementations the optimised code replaced,
+ * kept as the reference the new code is compared with.
+ */
+final class ClosureTestData
+{
+    private static final Pattern CONSTANT_PATTERN = Pattern.compile("[A-Z0-9_]+");
+    private static final Pattern CLASS_PATTERN = Pattern.compile("[A-Z]{1}[a-zA-Z1-9]+");
+
+    private ClosureTestData()
+    {
+    }
+
+    /**
+     * The three decisions processReferenceExpression makes, as they were made before ReferenceClassifier
+     */
+    static int classifyWithRegex(final String reference)
+    {
+        final int index = reference.lastIndexOf('.');
+        final String definition = reference.substring(0, index);
+        final String identifier = reference.substring(index + 1);
+        int result = CONSTANT_PATTERN.matcher(identifier).matches() ? 1 : 0;
+
+        if (CLASS_PATTERN.matcher(definition).matches())
+        {
+            result |= 2;
+        }
+
+        for (String element : reference.split("\\."))
+        {
+            if (CLASS_PATTERN.matcher(element).matches())
+            {
+                result |= 4;
+                break;
+            }
+        }
+        return result;
+    }
+
+    static int classifyWithScanner(final String reference)
+    {
+        final int index = reference.lastIndexOf('.');
+        int result = ReferenceClassifier.isConstant(reference, index + 1, reference.length()) ? 1 : 0;
+
+        if (ReferenceClassifier.isClass(reference, 0, index))
+        {
+            result |= 2;
+        }
+
+        if (ReferenceClassifier.hasClassSegment(reference))
+        {
+            result |= 4;
+        }
+        return result;
+    }
+
+    /**
+     * JSDoc tag handling as it was before JSDocTypeParser
+     */
+    static String parseWithSubstring(final String text)
+    {
+        final int genericStart = text.indexOf('<');
+
+        if (genericStart != -1)
+        {
+            final int genericEnd = text.indexOf('>', genericStart);
+            return genericEnd != -1 ? text.substring(genericStart + 1, genericEnd) : "";
+        }
+        return text.indexOf('.') != -1 ? text.replace("{", "").replace("}", "") : "";
+    }
+
+    static String[] generateReferences(final Random random, final int count)
+    {
+        final String[] segments = {"my", "ns", "ui", "Widget", "EventType", "CHANGE", "MAX_SIZE", "util", "Foo2",
+                "prototype", "getValue", "A", "x_1"};
+        final String[] references = new String[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            final StringBuilder reference = new StringBuilder(segments[random.nextInt(segments.length)]);
+            final int length = 1 + random.nextInt(5);
+
+            for (int j = 0; j < length; j++)
+            {
+                reference.append('.').append(segments[random.nextInt(segments.length)]);
+            }
+            references[i] = reference.toString();
+        }
+        return references;
+    }
+
+    static String[] generateTypes(final Random random, final int count)
+    {
+        final String[] types = {"{my.ns.Foo}", "{!my.ns.Foo}", "{Array<my.ns.Bar>}", "{Object<string, my.ns.Foo>|my.ns.Bar}",
+                "{function(this:my.ns.Foo, number): my.ns.Bar}", "{{x: my.ns.Point, y: (my.ns.Size|null)}}", "{string}"};
+        final String[] result = new String[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            result[i] = types[random.nextInt(types.length)];
+        }
+        return result;
+    }
+
+    /**
+     * Closure module of roughly the given number of lines. Members are picked at random among documented
+     * methods with union and generic JSDoc types, methods with local variables shadowing namespace roots and
+     * methods referencing constants and classes, against a goog.require block that grows with the file.
+     *
+     * @param random source of the member mix
+     * @param lines  approximate number of lines
+     * @return javascript text
+     */
+    static String generateModule(final Random random, final int lines)
+    {
+        final StringBuilder text = new StringBuilder(lines * 48);
+        final int requires = Math.max(5, lines / 200);
+        int lineCount = 2;
+
+        text.append("goog.provide('my.app.Main');\n\n");
+
+        for (int i = 0; i < requires; i++)
+        {
+            text.append("goog.require('my.ns.Dep").append(i).append("');\n");
+            lineCount++;
+        }
+
+        for (int member = 0; lineCount < lines; member++)
+        {
+            final int dependency = random.nextInt(requires);
+
+            switch (random.nextInt(3))
+            {
+                case 0:
+                    text.append("\n/**\n")
+                            .append(" * @param {Array<my.ns.Dep").append(dependency).append(">|my.ns.Item").append(member % 40).append("} items\n")
+                            .append(" * @return {Object<string, my.ns.Result").append(member % 30).append(">}\n")
+                            .append(" */\n")
+                            .append("my.app.Main.prototype.method").append(member).append(" = function(items) {\n")
+                            .append("    return null;\n")
+                            .append("};\n");
+                    lineCount += 8;
+                    break;
+                case 1:
+                    text.append("\nmy.app.Main.prototype.method").append(member).append(" = function(value) {\n")
+                            .append("    var my = {ns: value};\n")
+                            .append("    var widget = my.ns.Widget").append(member % 50).append(";\n")
+                            .append("    var count = value.length + widget.size;\n")
+                            .append("    return count > 0 ? widget : my;\n")
+                            .append("};\n");
+                    lineCount += 7;
+                    break;
+                default:
+                    text.append("\nmy.app.Main.prototype.method").append(member).append(" = function(value) {\n")
+                            .append("    var widget = new my.ns.Dep").append(dependency).append("(value);\n")
+                            .append("    my.ns.util").append(member % 20).append(".log(my.ns.Dep").append(dependency)
+                            .append(".MAX_SIZE, this.field_);\n")
+                            .append("    return widget.render(goog.array.clone([value]));\n")
+                            .append("};\n");
+                    lineCount += 6;
+                    break;
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, 0 where the JVM cannot tell
+     */
+    static long allocatedBytes()
+    {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
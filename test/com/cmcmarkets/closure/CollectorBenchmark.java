@@ -0,0 +1,73 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+import java.util.Random;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Benchmark of {@link RequireStatementsCollector} on generated closure modules of 1k, 10k and 100k lines. Needs the
+ * platform test framework for the javascript tree, so it runs as a test, but only when started with
+ * -Dclosure.benchmark=true; it prints milliseconds, lines per millisecond and allocated bytes per file for every
+ * size. The tree of the file is built before measuring, so only the walk and the classification are counted.
+ */
+public class CollectorBenchmark extends LightCodeInsightFixtureTestCase
+{
+    private static final int[] LINES = {1000, 10000, 100000};
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    /**
+     * Keeps results alive so the JIT cannot drop the benchmarked code
+     */
+    private static int sink;
+
+    public void testCollector()
+    {
+        if (!Boolean.getBoolean("closure.benchmark"))
+        {
+            return;
+        }
+
+        for (int lines : LINES)
+        {
+            final PsiFile file = myFixture.configureByText("module" + lines + ".js",
+                    ClosureTestData.generateModule(new Random(lines), lines));
+
+            for (int round = 0; round < WARMUP_ROUNDS; round++)
+            {
+                sink += collect(file).nodesVisited;
+            }
+
+            final long bytesBefore = ClosureTestData.allocatedBytes();
+            final long start = System.nanoTime();
+
+            for (int round = 0; round < MEASURED_ROUNDS; round++)
+            {
+                sink += collect(file).nodesVisited;
+            }
+
+            final double millis = (System.nanoTime() - start) / 1000000.0 / MEASURED_ROUNDS;
+            final long bytes = (ClosureTestData.allocatedBytes() - bytesBefore) / MEASURED_ROUNDS;
+
+            System.out.println(String.format("collector, %6d lines %10.2f ms/file %10.1f lines/ms %12d B/file", lines, millis,
+                    lines / millis, bytes));
+        }
+
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static ValidationSession collect(final PsiFile file)
+    {
+        final ValidationSession session = new ValidationSession();
+        new RequireStatementsCollector(session, ClosureGlobals.BUILT_IN_GLOBALS, false).collect(file);
+        return session;
+    }
+}
@@ -0,0 +1,83 @@
+package com.cmcmarkets.closure;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ */
+public class JSDocTypeParserTest extends TestCase
+{
+    public void testSimpleType()
+    {
+        assertNames("{my.ns.Foo}", "my.ns.Foo@1");
+    }
+
+    public void testNullabilityAndOptional()
+    {
+        assertNames("{!my.ns.Foo=}", "my.ns.Foo@2");
+        assertNames("{?my.ns.Foo}", "my.ns.Foo@2");
+    }
+
+    public void testUnionWithGenerics()
+    {
+        assertNames("{Object<string, my.ns.Foo>|my.ns.Bar}", "Object@1", "string@8", "my.ns.Foo@16", "my.ns.Bar@27");
+    }
+
+    public void testDottedGenerics()
+    {
+        assertNames("{Array.<my.ns.Foo>}", "Array@1", "my.ns.Foo@8");
+    }
+
+    public void testFunctionType()
+    {
+        assertNames("{function(this:my.ns.Foo, number): my.ns.Bar}", "my.ns.Foo@15", "number@26", "my.ns.Bar@35");
+    }
+
+    public void testRecordType()
+    {
+        assertNames("{{x: my.ns.Point, y: (my.ns.Size|null)}}", "my.ns.Point@5", "my.ns.Size@22", "null@33");
+    }
+
+    public void testWithoutBraces()
+    {
+        assertNames("my.ns.Foo", "my.ns.Foo@0");
+    }
+
+    public void testCachedResultIsEqual()
+    {
+        assertEquals(describe(JSDocTypeParser.scan("{my.ns.Foo|my.ns.Bar}")), describe(JSDocTypeParser.parse("{my.ns.Foo|my.ns.Bar}")));
+        assertSame(JSDocTypeParser.parse("{my.ns.Baz}"), JSDocTypeParser.parse("{my.ns.Baz}"));
+    }
+
+    private static void assertNames(final String text, final String... expected)
+    {
+        final List<String> names = describe(JSDocTypeParser.parse(text));
+
+        assertEquals(text, Arrays.asList(expected), names);
+
+        for (JSDocTypeParser.TypeName type : JSDocTypeParser.parse(text))
+        {
+            assertEquals(type.name, text.substring(type.offset, type.offset + type.name.length()));
+        }
+    }
+
+    private static List<String> describe(final List<JSDocTypeParser.TypeName> types)
+    {
+        final List<String> names = new ArrayList<String>();
+
+        for (JSDocTypeParser.TypeName type : types)
+        {
+            names.add(type.name + "@" + type.offset);
+        }
+        return names;
+    }
+}
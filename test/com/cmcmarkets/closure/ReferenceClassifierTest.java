@@ -0,0 +1,58 @@
+package com.cmcmarkets.closure;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Checks {@link ReferenceClassifier} against the CONSTANT_PATTERN and CLASS_PATTERN regular expressions it replaced.
+ */
+public class ReferenceClassifierTest extends TestCase
+{
+    public void testConstant()
+    {
+        assertTrue(ReferenceClassifier.isConstant("MAX_SIZE", 0, 8));
+        assertTrue(ReferenceClassifier.isConstant("my.ns.A1", 6, 8));
+        assertFalse(ReferenceClassifier.isConstant("my.ns.Foo", 6, 9));
+        assertFalse(ReferenceClassifier.isConstant("my.ns.", 6, 6));
+    }
+
+    public void testClass()
+    {
+        assertTrue(ReferenceClassifier.isClass("my.ns.Foo2", 6, 10));
+        assertFalse(ReferenceClassifier.isClass("my.ns.A", 6, 7));
+        assertFalse(ReferenceClassifier.isClass("my.ns.Foo0", 6, 10));
+        assertFalse(ReferenceClassifier.isClass("my.ns.foo", 6, 9));
+        assertFalse(ReferenceClassifier.isClass("my.ns.Foo_Bar", 6, 13));
+    }
+
+    public void testClassSegment()
+    {
+        assertTrue(ReferenceClassifier.hasClassSegment("my.Widget.EventType"));
+        assertFalse(ReferenceClassifier.hasClassSegment("my.ns.A.b"));
+        assertFalse(ReferenceClassifier.hasClassSegment("my.ns.util"));
+    }
+
+    public void testPrototype()
+    {
+        assertTrue(ReferenceClassifier.containsPrototype("my.Foo.prototype.bar", 20));
+        assertFalse(ReferenceClassifier.containsPrototype("my.Foo.prototype", 6));
+        assertFalse(ReferenceClassifier.containsPrototype("my.Foo.proto", 12));
+    }
+
+    public void testSameDecisionsAsRegularExpressions()
+    {
+        for (String reference : ClosureTestData.generateReferences(new Random(7), 20000))
+        {
+            assertEquals(reference, ClosureTestData.classifyWithRegex(reference),
+                    ClosureTestData.classifyWithScanner(reference));
+        }
+    }
+}
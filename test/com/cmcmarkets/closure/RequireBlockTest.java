@@ -0,0 +1,119 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ */
+public class RequireBlockTest extends LightCodeInsightFixtureTestCase
+{
+    public void testSortsAndRemovesDuplicates()
+    {
+        doTest("goog.provide('my.app.Main');\n"
+                        + "\n"
+                        + "goog.require(\"my.ns.Foo\");\n"
+                        + "goog.require(\"goog.dom\");\n"
+                        + "goog.require(\"my.ns.Foo\");\n"
+                        + "goog.require(\"goog.array\");\n"
+                        + "\n"
+                        + "my.app.Main = 1;\n",
+                Arrays.asList("my.ns.Bar", "goog.array"),
+                "goog.provide('my.app.Main');\n"
+                        + "\n"
+                        + "goog.require(\"goog.array\");\n"
+                        + "goog.require(\"goog.dom\");\n"
+                        + "goog.require(\"my.ns.Bar\");\n"
+                        + "goog.require(\"my.ns.Foo\");\n"
+                        + "\n"
+                        + "my.app.Main = 1;\n");
+    }
+
+    public void testKeepsCommentsBelowTheBlock()
+    {
+        doTest("goog.require(\"my.ns.Foo\");\n"
+                        + "// needed by the tests\n"
+                        + "goog.require(\"goog.dom\");\n",
+                Collections.<String>emptyList(),
+                "goog.require(\"goog.dom\");\n"
+                        + "goog.require(\"my.ns.Foo\");\n"
+                        + "// needed by the tests\n");
+    }
+
+    public void testLeavesRequiresAfterCodeInPlace()
+    {
+        doTest("goog.provide('my.app.Main');\n"
+                        + "\n"
+                        + "goog.require(\"my.ns.Foo\");\n"
+                        + "\n"
+                        + "my.app.Main = function() {\n"
+                        + "    goog.require(\"my.ns.Late\");\n"
+                        + "};\n"
+                        + "goog.require(\"my.ns.AfterCode\");\n",
+                Arrays.asList("my.ns.Bar", "my.ns.Late"),
+                "goog.provide('my.app.Main');\n"
+                        + "\n"
+                        + "goog.require(\"my.ns.Bar\");\n"
+                        + "goog.require(\"my.ns.Foo\");\n"
+                        + "\n"
+                        + "my.app.Main = function() {\n"
+                        + "    goog.require(\"my.ns.Late\");\n"
+                        + "};\n"
+                        + "goog.require(\"my.ns.AfterCode\");\n");
+    }
+
+    public void testInsertsBelowProvide()
+    {
+        doTest("goog.provide('my.app.Main');\n"
+                        + "\n"
+                        + "my.app.Main = 1;\n",
+                Collections.singletonList("my.ns.Foo"),
+                "goog.provide('my.app.Main');\n"
+                        + "goog.require(\"my.ns.Foo\");\n"
+                        + "\n"
+                        + "my.app.Main = 1;\n");
+    }
+
+    public void testDeclarationsMatchTheFullSession()
+    {
+        final PsiFile file = myFixture.configureByText("test.js", "goog.provide('my.app.Main');\n"
+                + "goog.require(\"goog.dom\");\n"
+                + "goog.require(\"my.ns.Foo\");\n"
+                + "my.app.Main = function() {\n"
+                + "    goog.require(\"my.ns.Late\");\n"
+                + "};\n");
+        final ValidationSession full = ValidationSession.getSession(file);
+        final ValidationSession declarations = ValidationSession.getDeclarations(file);
+
+        assertEquals(full.provideSet, declarations.provideSet);
+        assertEquals(full.lastRequireOffset, declarations.lastRequireOffset);
+        assertEquals(full.rootOffset, declarations.rootOffset);
+        assertTrue(full.requireSet.contains("my.ns.Late"));
+        assertFalse(declarations.requireSet.contains("my.ns.Late"));
+    }
+
+    private void doTest(final String before, final Collection<String> add, final String after)
+    {
+        final PsiFile file = myFixture.configureByText("test.js", before);
+
+        WriteCommandAction.runWriteCommandAction(getProject(), new Runnable()
+        {
+            public void run()
+            {
+                RequireBlock.rewrite(file, ValidationSession.getSession(file), add);
+            }
+        });
+
+        myFixture.checkResult(after);
+    }
+}
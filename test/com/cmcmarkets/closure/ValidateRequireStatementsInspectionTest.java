@@ -0,0 +1,87 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.codeInsight.intention.IntentionAction;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Golden tests of the require statement inspection. Each <code>name.js</code> in the test data carries the
+ * expected problems as highlighting markup, <code>name.after.js</code> is the expected text after the quick fix.
+ * <code>provider.js</code> provides the namespaces the test files use.
+ */
+public class ValidateRequireStatementsInspectionTest extends LightCodeInsightFixtureTestCase
+{
+    private static final String ADD_REQUIRE = "Add goog.require statement";
+    private static final String FIX_ALL = "Fix all goog.require statements";
+    private static final String REMOVE_UNUSED = "Remove unused goog.require statement";
+
+    @Override
+    protected String getTestDataPath()
+    {
+        return "testData/inspection";
+    }
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        myFixture.enableInspections(new ValidateRequireStatementsInspection());
+    }
+
+    public void testMissingRequire()
+    {
+        doFixTest(ADD_REQUIRE);
+    }
+
+    public void testFixAll()
+    {
+        doFixTest(FIX_ALL);
+    }
+
+    public void testUnusedRequire()
+    {
+        doFixTest(REMOVE_UNUSED);
+    }
+
+    public void testNotProvided()
+    {
+        doHighlightingTest();
+        assertEmpty(myFixture.filterAvailableIntentions(ADD_REQUIRE));
+    }
+
+    public void testJsDocTypes()
+    {
+        doFixTest(FIX_ALL);
+    }
+
+    public void testLocalNames()
+    {
+        doHighlightingTest();
+    }
+
+    public void testNonClosureFileSkipped()
+    {
+        doHighlightingTest();
+    }
+
+    private void doHighlightingTest()
+    {
+        myFixture.configureByFiles(getTestName(true) + ".js", "provider.js");
+        myFixture.checkHighlighting(true, false, true);
+    }
+
+    private void doFixTest(final String fixName)
+    {
+        doHighlightingTest();
+
+        final IntentionAction action = myFixture.findSingleIntention(fixName);
+        myFixture.launchAction(action);
+        myFixture.checkResultByFile(getTestName(true) + ".after.js");
+    }
+}
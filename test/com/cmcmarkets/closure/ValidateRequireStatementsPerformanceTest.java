@@ -0,0 +1,128 @@
+package com.cmcmarkets.closure;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import com.intellij.util.ThrowableRunnable;
+
+/**
+ * This document and its contents are protected by copyright 2011 and owned by CMC Markets UK Plc.
+ * The copying and reproduction of this document and/or its content (whether wholly or partly) or any
+ * incorporation of the same into any other material in any media or format of any kind is strictly prohibited.
+ * All rights are reserved.
+ * <p/>
+ * © CMC Markets Plc 2012
+ * <p/>
+ * Wall time and allocation budgets of the collector on generated files of increasing difficulty. The tree of
+ * the file is built before measuring, so only the walk and the classification are counted.
+ */
+public class ValidateRequireStatementsPerformanceTest extends LightCodeInsightFixtureTestCase
+{
+    private static final int MEGABYTE = 1024 * 1024;
+
+    public void testSmallFile()
+    {
+        doTest("small", generateFlat(50), 200, 4 * MEGABYTE);
+    }
+
+    public void testLargeFile()
+    {
+        doTest("large", generateFlat(5000), 3000, 128 * MEGABYTE);
+    }
+
+    public void testDeeplyNestedFile()
+    {
+        doTest("nested", generateNested(300), 1000, 16 * MEGABYTE);
+    }
+
+    public void testJsDocHeavyFile()
+    {
+        doTest("jsdoc", generateJsDoc(3000), 2000, 64 * MEGABYTE);
+    }
+
+    private void doTest(final String tier, final String text, final int expectedMs, final long allocationBudget)
+    {
+        final PsiFile file = myFixture.configureByText(tier + ".js", text);
+
+        // builds the tree and warms up the parser caches
+        final ValidationSession warmUp = collect(file);
+        assertFalse(tier, warmUp.errorRanges.isEmpty());
+
+        final long before = ClosureTestData.allocatedBytes();
+        collect(file);
+        final long allocated = ClosureTestData.allocatedBytes() - before;
+
+        assertTrue(tier + " allocated " + allocated + " bytes, the budget is " + allocationBudget, allocated <= allocationBudget);
+
+        PlatformTestUtil.startPerformanceTest("collector on the " + tier + " file", expectedMs, new ThrowableRunnable()
+        {
+            public void run() throws Throwable
+            {
+                collect(file);
+            }
+        }).assertTiming();
+    }
+
+    private static ValidationSession collect(final PsiFile file)
+    {
+        final ValidationSession session = new ValidationSession();
+        new RequireStatementsCollector(session, ClosureGlobals.BUILT_IN_GLOBALS, false).collect(file);
+        return session;
+    }
+
+    /**
+     * Many top level members, each with a few references, like a large generated module
+     */
+    private static String generateFlat(final int members)
+    {
+        final StringBuilder text = new StringBuilder("goog.provide('my.app.Main');\n\ngoog.require('my.ns.Used');\n\n");
+
+        for (int i = 0; i < members; i++)
+        {
+            text.append("my.app.Main.prototype.method").append(i).append(" = function(value) {\n")
+                    .append("    var widget = new my.ns.Widget").append(i % 50).append("(value);\n")
+                    .append("    my.ns.util").append(i % 20).append(".log(my.ns.Used.CONSTANT, this.field_);\n")
+                    .append("    return widget.render(goog.array.clone([value]));\n")
+                    .append("};\n\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Functions nested inside each other, the depth a recursive walk would have to follow
+     */
+    private static String generateNested(final int depth)
+    {
+        final StringBuilder text = new StringBuilder("goog.provide('my.app.Main');\n\nmy.app.Main = function() {\n");
+
+        for (int i = 0; i < depth; i++)
+        {
+            text.append("return function() { new my.ns.Level").append(i).append("();\n");
+        }
+        for (int i = 0; i < depth; i++)
+        {
+            text.append("};\n");
+        }
+        return text.append("};\n").toString();
+    }
+
+    /**
+     * Members documented with union and generic types
+     */
+    private static String generateJsDoc(final int members)
+    {
+        final StringBuilder text = new StringBuilder("goog.provide('my.app.Main');\n\n");
+
+        for (int i = 0; i < members; i++)
+        {
+            text.append("/**\n")
+                    .append(" * @param {Array<my.ns.Item").append(i % 40).append(">|my.ns.Other} items\n")
+                    .append(" * @return {Object<string, my.ns.Result").append(i % 30).append(">}\n")
+                    .append(" */\n")
+                    .append("my.app.Main.prototype.method").append(i).append(" = function(items) {\n")
+                    .append("    return null;\n")
+                    .append("};\n\n");
+        }
+        return text.toString();
+    }
+}
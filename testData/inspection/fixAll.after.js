@@ -0,0 +1,9 @@
+goog.provide('my.app.Main');
+goog.require("my.ns.Bar");
+goog.require("my.ns.Foo");
+goog.require("my.ns.util");
+
+my.app.Main = function() {
+    my.ns.util.log(new my.ns.Foo());
+    return new my.ns.Bar();
+};
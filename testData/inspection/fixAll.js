@@ -0,0 +1,6 @@
+goog.provide('my.app.Main');
+
+my.app.Main = function() {
+    <error descr="Reference needs goog.require statement">my.ns.util</error>.log(new <error descr="Reference needs goog.require statement"><caret>my.ns.Foo</error>());
+    return new <error descr="Reference needs goog.require statement">my.ns.Bar</error>();
+};
@@ -0,0 +1,8 @@
+goog.provide('my.app.Main');
+goog.require("my.ns.Bar");
+goog.require("my.ns.Foo");
+
+/**
+ * @type {Object<string, my.ns.Foo>|my.ns.Bar}
+ */
+my.app.Main.value = null;
@@ -0,0 +1,6 @@
+goog.provide('my.app.Main');
+
+/**
+ * @type {Object<string, <error descr="Reference needs goog.require statement"><caret>my.ns.Foo</error>>|<error descr="Reference needs goog.require statement">my.ns.Bar</error>}
+ */
+my.app.Main.value = null;
@@ -0,0 +1,6 @@
+goog.provide('my.app.Main');
+
+my.app.Main = function(my) {
+    var other = {};
+    return my.ns.Foo + other.Thing.Value;
+};
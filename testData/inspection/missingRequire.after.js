@@ -0,0 +1,8 @@
+goog.provide('my.app.Main');
+
+goog.require("goog.array");
+goog.require("my.ns.Foo");
+
+my.app.Main = function() {
+    return new my.ns.Foo(goog.array.clone([]));
+};
@@ -0,0 +1,7 @@
+goog.provide('my.app.Main');
+
+goog.require("goog.array");
+
+my.app.Main = function() {
+    return new <error descr="Reference needs goog.require statement"><caret>my.ns.Foo</error>(goog.array.clone([]));
+};
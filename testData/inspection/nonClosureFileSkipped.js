@@ -0,0 +1 @@
+var widget = new my.ns.Foo();
@@ -0,0 +1,5 @@
+goog.provide('my.app.Main');
+
+my.app.Main = function() {
+    return new <error descr="Namespace 'other.Missing' is not provided by any goog.provide statement"><caret>other.Missing</error>();
+};
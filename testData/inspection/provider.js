@@ -0,0 +1,3 @@
+goog.provide('my.ns.Foo');
+goog.provide('my.ns.Bar');
+goog.provide('my.ns.util');
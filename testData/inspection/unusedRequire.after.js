@@ -0,0 +1,7 @@
+goog.provide('my.app.Main');
+
+goog.require("my.ns.Foo");
+
+my.app.Main = function() {
+    return new my.ns.Foo();
+};
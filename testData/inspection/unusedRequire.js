@@ -0,0 +1,8 @@
+goog.provide('my.app.Main');
+
+<warning descr="Unused goog.require statement">goog.require("my.ns.<caret>Bar");</warning>
+goog.require("my.ns.Foo");
+
+my.app.Main = function() {
+    return new my.ns.Foo();
+};